@@ -0,0 +1,95 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.CheckForNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+
+/**
+ * Find the active rule of the reported bug types.
+ *
+ * Each bug type is looked up once in the active rules of the repositories, the rule (or its absence) is then reused for all
+ * the bugs of this type. The bugs of inactive rules are counted per type so they can be logged once at the end of the analysis.
+ * The lookups can be done concurrently by the issue mapping threads.
+ */
+final class ActiveRuleLookup {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ActiveRuleLookup.class);
+
+  private final ActiveRules activeRules;
+  private final List<String> repositories;
+  private final Map<String, Optional<ActiveRule>> rulesByType = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> inactiveRuleHits = new ConcurrentHashMap<>();
+
+  ActiveRuleLookup(ActiveRules activeRules, List<String> repositories) {
+    this.activeRules = activeRules;
+    this.repositories = repositories;
+  }
+
+  /**
+   * @param bugType The SpotBugs bug pattern (ie: <code>NP_NULL_ON_SOME_PATH</code>)
+   * @return The active rule of the first repository containing it, null if the rule is not active
+   */
+  @CheckForNull
+  ActiveRule find(String bugType) {
+    Optional<ActiveRule> rule = rulesByType.computeIfAbsent(bugType, this::findInRepositories);
+    if (!rule.isPresent()) {
+      inactiveRuleHits.computeIfAbsent(bugType, k -> new LongAdder()).increment();
+    }
+    return rule.orElse(null);
+  }
+
+  private Optional<ActiveRule> findInRepositories(String bugType) {
+    for (String repoKey : repositories) {
+      ActiveRule rule = activeRules.findByInternalKey(repoKey, bugType);
+      if (rule != null) {
+        return Optional.of(rule);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @return The number of bugs reported for each inactive rule, sorted by bug type
+   */
+  SortedMap<String, Long> getInactiveRuleHits() {
+    SortedMap<String, Long> hits = new TreeMap<>();
+    inactiveRuleHits.forEach((bugType, count) -> hits.put(bugType, count.sum()));
+    return hits;
+  }
+
+  void logInactiveRuleHits() {
+    for (Map.Entry<String, Long> entry : getInactiveRuleHits().entrySet()) {
+      LOG.warn("Findbugs rule '{}' is not active in Sonar, {} bug(s) ignored.", entry.getKey(), entry.getValue());
+    }
+  }
+}
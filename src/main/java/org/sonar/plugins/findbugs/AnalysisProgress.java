@@ -0,0 +1,76 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.IClassObserver;
+
+/**
+ * Record the classes reached by the SpotBugs engine, so the classes which were not analyzed can be reported
+ * when the analysis is stopped before the end.
+ */
+final class AnalysisProgress implements IClassObserver {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisProgress.class);
+
+  private final Set<String> observedClasses = ConcurrentHashMap.newKeySet();
+
+  @Override
+  public void observeClass(ClassDescriptor classDescriptor) {
+    observedClasses.add(classDescriptor.getDottedClassName());
+  }
+
+  /**
+   * @return The names of the classes of the project which were never reached by the engine, sorted alphabetically
+   */
+  Set<String> getClassesNotAnalyzed(Project project) throws IOException {
+    Set<String> classesNotAnalyzed = listClassNames(project);
+    classesNotAnalyzed.removeAll(observedClasses);
+    return classesNotAnalyzed;
+  }
+
+  /**
+   * @return The names of the classes of the project, sorted alphabetically
+   */
+  static Set<String> listClassNames(Project project) throws IOException {
+    Set<String> classNames = new TreeSet<>();
+    for (Path classFile : ClassFileScanner.listClassFiles(project)) {
+      try (InputStream input = Files.newInputStream(classFile)) {
+        classNames.add(new ClassReader(input).getClassName().replace('/', '.'));
+      } catch (RuntimeException e) {
+        LOG.debug("Unable to read the class file {}", classFile, e);
+      }
+    }
+    return classNames;
+  }
+}
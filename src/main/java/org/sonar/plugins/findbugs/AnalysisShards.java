@@ -0,0 +1,127 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+
+/**
+ * Split the class files of a project in shards analyzed by separate SpotBugs engines and merge the results.
+ *
+ * The classes of a package are always analyzed by the same engine, the packages are distributed so that every shard
+ * has roughly the same number of classes. The partition and the merge only depend on the class files names, so two
+ * analyses of the same project give the same results.
+ */
+final class AnalysisShards {
+
+  private AnalysisShards() {
+  }
+
+  /**
+   * @param files The class files to analyze
+   * @param maxShards The maximum number of shards
+   * @return The class files of each shard, there are less shards than requested if there are not enough packages
+   */
+  static List<List<String>> partition(List<String> files, int maxShards) {
+    Map<String, List<String>> filesByPackage = new TreeMap<>();
+    for (String file : files) {
+      filesByPackage.computeIfAbsent(getPackageDirectory(file), k -> new ArrayList<>()).add(file);
+    }
+
+    List<List<String>> packages = new ArrayList<>(filesByPackage.values());
+    // Largest packages first, the sort is stable so packages of the same size keep their name order
+    packages.sort(Comparator.comparingInt((List<String> packageFiles) -> packageFiles.size()).reversed());
+
+    int shardCount = Math.max(1, Math.min(maxShards, packages.size()));
+    List<List<String>> shards = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new ArrayList<>());
+    }
+
+    for (List<String> packageFiles : packages) {
+      List<String> smallestShard = shards.get(0);
+      for (List<String> shard : shards) {
+        if (shard.size() < smallestShard.size()) {
+          smallestShard = shard;
+        }
+      }
+      smallestShard.addAll(packageFiles);
+    }
+
+    for (List<String> shard : shards) {
+      shard.sort(null);
+    }
+
+    return shards;
+  }
+
+  /**
+   * @return A copy of the project (auxiliary classpath, working directory, etc.) analyzing only the given files
+   */
+  static Project createShardProject(Project project, List<String> files) {
+    Project shardProject = project.duplicate();
+    for (int i = shardProject.getFileCount() - 1; i >= 0; i--) {
+      shardProject.removeFile(i);
+    }
+    for (String file : files) {
+      shardProject.addFile(file);
+    }
+    return shardProject;
+  }
+
+  /**
+   * @param project The project containing all the shards
+   * @param shardResults The bugs collections of the shards, in the order of the partition
+   * @return A single bugs collection with the bugs, errors and missing classes of all the shards
+   */
+  static SortedBugCollection merge(Project project, List<SortedBugCollection> shardResults) {
+    SortedBugCollection merged = new SortedBugCollection(project);
+    merged.setWithMessages(true);
+
+    for (SortedBugCollection shardResult : shardResults) {
+      for (BugInstance bugInstance : shardResult) {
+        merged.add(bugInstance, false);
+      }
+      for (AnalysisError error : shardResult.getErrors()) {
+        merged.addError(error);
+      }
+      Iterator<String> missingClasses = shardResult.missingClassIterator();
+      while (missingClasses.hasNext()) {
+        merged.addMissingClass(missingClasses.next());
+      }
+    }
+
+    return merged;
+  }
+
+  private static String getPackageDirectory(String file) {
+    int lastSeparator = Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\'));
+    return lastSeparator < 0 ? "" : file.substring(0, lastSeparator);
+  }
+}
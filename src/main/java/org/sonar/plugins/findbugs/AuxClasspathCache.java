@@ -0,0 +1,400 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.objectweb.asm.ClassReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.plugins.findbugs.resource.ClassMetadataLoadingException;
+import org.sonar.plugins.findbugs.resource.ClassReferenceExtractor;
+
+import edu.umd.cs.findbugs.Project;
+
+/**
+ * Metadata of the jars of the SpotBugs auxiliary classpath: the classes they contain and the supertypes of these classes.
+ *
+ * The metadata is identified by the SHA-256 of the jar content. It is computed once per scanner execution for all the
+ * (sub)projects and, when a cache directory is configured, stored on disk for the next executions. The hash of a jar is
+ * only computed again when its size or modification time changes.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class AuxClasspathCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AuxClasspathCache.class);
+
+  private static final int FORMAT_VERSION = 2;
+  private static final String CLASS_EXTENSION = ".class";
+
+  private final Map<String, String> hashByJar = new HashMap<>();
+  private final Map<String, JarMetadata> metadataByHash = new HashMap<>();
+
+  /**
+   * Remove from the auxiliary classpath the jars which would only slow down SpotBugs: the copies of a jar already on the
+   * classpath (e.g. the same library coming from two repositories) and the jars without any class or resource.
+   * The jars referencing other jars in their manifest are kept.
+   *
+   * @param cacheDir The directory where the metadata is stored between the executions, null to keep it in memory only
+   */
+  public void removeRedundantJars(Project project, @Nullable File cacheDir) throws IOException {
+    Set<String> hashes = new HashSet<>();
+    int removedJars = 0;
+
+    for (int i = 0; i < project.getNumAuxClasspathEntries(); i++) {
+      File entry = new File(project.getAuxClasspathEntry(i));
+      if (!entry.isFile()) {
+        continue;
+      }
+
+      JarMetadata jarMetadata = getJarMetadata(entry, cacheDir);
+      if (jarMetadata == null) {
+        continue;
+      }
+      boolean emptyJar = jarMetadata.getClassNames().isEmpty() && !jarMetadata.hasResources() && !jarMetadata.hasManifestClassPath();
+      if (emptyJar || !hashes.add(jarMetadata.getHash())) {
+        LOG.debug("Removing {} from the SpotBugs auxiliary classpath, {}", entry, emptyJar ? "it does not contain any class or resource" : "it is a copy of another jar");
+        project.removeAuxClasspathEntry(i);
+        i--;
+        removedJars++;
+      }
+    }
+
+    if (removedJars > 0) {
+      LOG.info("{} duplicate or empty jar(s) removed from the SpotBugs auxiliary classpath", removedJars);
+    }
+  }
+
+  /**
+   * Remove from the auxiliary classpath the jars which do not contain any class needed by the classes to analyze: the
+   * types referenced by the constant pools of these classes and, transitively, the supertypes of the referenced types.
+   * The supertypes of the referenced classes found in the directories of the auxiliary classpath are followed too.
+   * The directories, the jars referencing other jars in their manifest and the entries which cannot be read are kept.
+   *
+   * @param cacheDir The directory where the metadata is stored between the executions, null to keep it in memory only
+   */
+  public void removeUnreferencedJars(Project project, @Nullable File cacheDir) throws IOException {
+    Set<String> referencedTypes = new HashSet<>();
+    for (String file : project.getFileList()) {
+      Path path = Paths.get(file);
+      if (!Files.isDirectory(path) && !ClassFileScanner.isClassFile(path)) {
+        LOG.debug("The SpotBugs auxiliary classpath is not pruned, the references of the archive {} are not read", file);
+        return;
+      }
+    }
+    ClassReferenceExtractor referenceExtractor = new ClassReferenceExtractor();
+    for (Path classFile : ClassFileScanner.listClassFiles(project)) {
+      try {
+        referencedTypes.addAll(referenceExtractor.getReferencedClasses(new ClassReader(Files.readAllBytes(classFile))));
+      } catch (ClassMetadataLoadingException | IllegalArgumentException e) {
+        LOG.debug("The SpotBugs auxiliary classpath is not pruned, the references of the class file {} cannot be read", classFile, e);
+        return;
+      }
+    }
+
+    // The first jar containing a class is the one loaded by SpotBugs
+    Map<String, JarMetadata> jarByClass = new HashMap<>();
+    List<JarMetadata> jars = new ArrayList<>();
+    List<File> directories = new ArrayList<>();
+    for (String entry : project.getAuxClasspathEntryList()) {
+      File file = new File(entry);
+      JarMetadata jarMetadata = file.isFile() ? getJarMetadata(file, cacheDir) : null;
+      jars.add(jarMetadata);
+      if (jarMetadata != null) {
+        for (String className : jarMetadata.getClassNames()) {
+          jarByClass.putIfAbsent(className, jarMetadata);
+        }
+      } else if (file.isDirectory()) {
+        directories.add(file);
+      }
+    }
+
+    // The supertypes of the classes of the directories (ie: the other modules of the project) are needed too
+    Map<String, File> directoryClassByName = new HashMap<>();
+    for (ClassFileScanner.ClassFile classFile : ClassFileScanner.scan(directories, false)) {
+      directoryClassByName.putIfAbsent(classFile.getClassName(), classFile.getFile());
+    }
+
+    Set<JarMetadata> usedJars = new HashSet<>();
+    Deque<String> typesToResolve = new ArrayDeque<>(referencedTypes);
+    while (!typesToResolve.isEmpty()) {
+      String type = typesToResolve.pop();
+      List<String> supertypes = new ArrayList<>();
+      JarMetadata jarMetadata = jarByClass.get(type);
+      if (jarMetadata != null) {
+        usedJars.add(jarMetadata);
+        Collections.addAll(supertypes, jarMetadata.getSupertypes(type));
+      }
+      File directoryClass = directoryClassByName.get(type);
+      if (directoryClass != null) {
+        supertypes.addAll(readSupertypes(directoryClass));
+      }
+      // Nothing to add for the JDK or missing classes
+      for (String supertype : supertypes) {
+        if (!supertype.isEmpty() && referencedTypes.add(supertype)) {
+          typesToResolve.push(supertype);
+        }
+      }
+    }
+
+    int removedJars = 0;
+    long removedBytes = 0;
+    int auxClasspathSize = jars.size();
+    for (int i = jars.size() - 1; i >= 0; i--) {
+      JarMetadata jarMetadata = jars.get(i);
+      if (jarMetadata != null && !jarMetadata.hasManifestClassPath() && !usedJars.contains(jarMetadata)) {
+        File jar = new File(project.getAuxClasspathEntry(i));
+        LOG.debug("Removing {} from the SpotBugs auxiliary classpath, none of its classes is referenced", jar);
+        removedBytes += jar.length();
+        removedJars++;
+        project.removeAuxClasspathEntry(i);
+      }
+    }
+
+    LOG.info("{} of {} jar(s) ({} KB) removed from the SpotBugs auxiliary classpath, they are not referenced by the analyzed classes",
+      removedJars, auxClasspathSize, removedBytes / 1024);
+  }
+
+  /**
+   * @return The superclass and the interfaces of the class, empty if the class file cannot be read
+   */
+  private static List<String> readSupertypes(File classFile) {
+    List<String> supertypes = new ArrayList<>();
+    try {
+      ClassReader classReader = new ClassReader(Files.readAllBytes(classFile.toPath()));
+      if (classReader.getSuperName() != null) {
+        supertypes.add(classReader.getSuperName().replace('/', '.'));
+      }
+      for (String interfaceName : classReader.getInterfaces()) {
+        supertypes.add(interfaceName.replace('/', '.'));
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Unable to read the supertypes of the class file {}", classFile, e);
+    }
+    return supertypes;
+  }
+
+  /**
+   * @return The metadata of the jar, null if it is not a valid archive
+   */
+  @CheckForNull
+  public synchronized JarMetadata getJarMetadata(File jar, @Nullable File cacheDir) throws IOException {
+    String jarKey = jar.getCanonicalPath() + '|' + jar.length() + '|' + jar.lastModified();
+    String hash = hashByJar.get(jarKey);
+    if (hash == null) {
+      hash = Sha256.hash(jar);
+      hashByJar.put(jarKey, hash);
+    }
+
+    if (metadataByHash.containsKey(hash)) {
+      return metadataByHash.get(hash);
+    }
+
+    JarMetadata jarMetadata = null;
+    File cacheFile = cacheDir == null ? null : new File(cacheDir, hash + ".bin");
+    if (cacheFile != null && cacheFile.isFile()) {
+      jarMetadata = readCacheFile(cacheFile, hash);
+    }
+    if (jarMetadata == null) {
+      jarMetadata = index(jar, hash);
+      if (jarMetadata != null && cacheFile != null) {
+        writeCacheFile(cacheFile, jarMetadata);
+      }
+    }
+
+    metadataByHash.put(hash, jarMetadata);
+    return jarMetadata;
+  }
+
+  @CheckForNull
+  private static JarMetadata index(File jar, String hash) {
+    Map<String, String[]> supertypesByClass = new HashMap<>();
+    boolean manifestClassPath;
+    boolean resources = false;
+
+    try (JarFile jarFile = new JarFile(jar)) {
+      Manifest manifest = jarFile.getManifest();
+      manifestClassPath = manifest != null && manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) != null;
+
+      Enumeration<? extends ZipEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (entry.isDirectory() || JarFile.MANIFEST_NAME.equalsIgnoreCase(name)) {
+          continue;
+        }
+        // The classes of the other Java versions of a multi-release jar have the same names
+        if (!name.endsWith(CLASS_EXTENSION) || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+          resources = true;
+          continue;
+        }
+
+        try (InputStream input = jarFile.getInputStream(entry)) {
+          ClassReader classReader = new ClassReader(input);
+          String[] interfaces = classReader.getInterfaces();
+          String[] supertypes = new String[interfaces.length + 1];
+          supertypes[0] = classReader.getSuperName() == null ? "" : classReader.getSuperName().replace('/', '.');
+          for (int i = 0; i < interfaces.length; i++) {
+            supertypes[i + 1] = interfaces[i].replace('/', '.');
+          }
+          supertypesByClass.put(classReader.getClassName().replace('/', '.'), supertypes);
+        } catch (RuntimeException e) {
+          LOG.debug("Unable to read the class {} of {}", name, jar, e);
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to read the archive {}", jar, e);
+      return null;
+    }
+
+    return new JarMetadata(hash, manifestClassPath, resources, supertypesByClass);
+  }
+
+  @CheckForNull
+  private static JarMetadata readCacheFile(File cacheFile, String hash) {
+    try (DataInputStream input = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath()))))) {
+      if (input.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+
+      boolean manifestClassPath = input.readBoolean();
+      boolean resources = input.readBoolean();
+      int classCount = input.readInt();
+      Map<String, String[]> supertypesByClass = new HashMap<>(classCount * 2);
+      for (int i = 0; i < classCount; i++) {
+        String className = input.readUTF();
+        String[] supertypes = new String[input.readInt()];
+        for (int j = 0; j < supertypes.length; j++) {
+          supertypes[j] = input.readUTF();
+        }
+        supertypesByClass.put(className, supertypes);
+      }
+      return new JarMetadata(hash, manifestClassPath, resources, supertypesByClass);
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Unable to read the cached metadata {}", cacheFile, e);
+      return null;
+    }
+  }
+
+  private static void writeCacheFile(File cacheFile, JarMetadata jarMetadata) {
+    try {
+      Files.createDirectories(cacheFile.getParentFile().toPath());
+      // Other scanners may share the directory, the file is only visible once it is complete
+      File tempFile = File.createTempFile(jarMetadata.getHash(), ".tmp", cacheFile.getParentFile());
+      try (OutputStream fileOutput = Files.newOutputStream(tempFile.toPath());
+        DataOutputStream output = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(fileOutput)))) {
+        output.writeInt(FORMAT_VERSION);
+        output.writeBoolean(jarMetadata.hasManifestClassPath());
+        output.writeBoolean(jarMetadata.hasResources());
+        output.writeInt(jarMetadata.supertypesByClass.size());
+        for (Map.Entry<String, String[]> entry : jarMetadata.supertypesByClass.entrySet()) {
+          output.writeUTF(entry.getKey());
+          output.writeInt(entry.getValue().length);
+          for (String supertype : entry.getValue()) {
+            output.writeUTF(supertype);
+          }
+        }
+      }
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Unable to store the metadata of the jar in {}", cacheFile, e);
+    }
+  }
+
+  public static class JarMetadata {
+    private final String hash;
+    private final boolean manifestClassPath;
+    private final boolean resources;
+    private final Map<String, String[]> supertypesByClass;
+
+    JarMetadata(String hash, boolean manifestClassPath, boolean resources, Map<String, String[]> supertypesByClass) {
+      this.hash = hash;
+      this.manifestClassPath = manifestClassPath;
+      this.resources = resources;
+      this.supertypesByClass = supertypesByClass;
+    }
+
+    /**
+     * @return The SHA-256 of the jar
+     */
+    public String getHash() {
+      return hash;
+    }
+
+    /**
+     * @return True if the manifest of the jar references other jars
+     */
+    public boolean hasManifestClassPath() {
+      return manifestClassPath;
+    }
+
+    /**
+     * @return True if the jar contains other files than the classes and the manifest
+     */
+    public boolean hasResources() {
+      return resources;
+    }
+
+    public Set<String> getClassNames() {
+      return Collections.unmodifiableSet(supertypesByClass.keySet());
+    }
+
+    /**
+     * @return The super class (empty for java.lang.Object) followed by the interfaces, null if the class is not in the jar
+     */
+    @CheckForNull
+    public String[] getSupertypes(String className) {
+      return supertypesByClass.get(className);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * The class files of the classpath directories indexed by fully qualified class name.
+ *
+ * The directories are listed once, instead of checking the existence of the class file in every classpath directory
+ * for each bug. When a class is found in several directories, the class file of the first directory is used.
+ */
+final class ClassFileIndex {
+
+  private final Map<String, File> classFiles;
+
+  private ClassFileIndex(Map<String, File> classFiles) {
+    this.classFiles = Collections.unmodifiableMap(classFiles);
+  }
+
+  /**
+   * @param classpath The classpath entries, the jars are ignored
+   */
+  static ClassFileIndex build(Collection<File> classpath) throws IOException {
+    Map<String, File> classFiles = new HashMap<>();
+    for (ClassFileScanner.ClassFile classFile : ClassFileScanner.scan(classpath, false)) {
+      classFiles.putIfAbsent(classFile.getClassName(), classFile.getFile());
+    }
+    return new ClassFileIndex(classFiles);
+  }
+
+  static ClassFileIndex empty() {
+    return new ClassFileIndex(Collections.emptyMap());
+  }
+
+  /**
+   * @param className The fully qualified name of the class (ie: <code>com.example.MyClass$Inner</code>)
+   * @return The class file, null if the class is not in the classpath directories
+   */
+  @CheckForNull
+  File find(String className) {
+    return classFiles.get(className);
+  }
+
+  int size() {
+    return classFiles.size();
+  }
+}
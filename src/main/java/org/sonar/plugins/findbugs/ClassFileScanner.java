@@ -0,0 +1,225 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.Project;
+
+/**
+ * List the class files of the binary directories of a (sub)project.
+ *
+ * The directories are listed in parallel by the common fork-join pool. Each directory is made canonical once, the paths
+ * of its files are resolved from the canonical path of the directory instead of being made canonical one by one.
+ * The class files are classified (precompiled JSP, module descriptor, test) while they are listed.
+ */
+final class ClassFileScanner {
+
+  private static final String CLASS_EXTENSION = ".class";
+  private static final String MODULE_INFO = "module-info.class";
+  private static final String WEBLOGIC_JSP_DIR = "jsp_servlet";
+  private static final Pattern JSP_FILE_NAME_PATTERN = Pattern.compile(".*_jsp[\\$0-9]*\\.class");
+
+  private static final Logger LOG = LoggerFactory.getLogger(ClassFileScanner.class);
+
+  private ClassFileScanner() {
+  }
+
+  /**
+   * @param dirs The binary directories, the entries which are not directories are ignored
+   * @param test true if the directories contain test classes
+   * @return The class files of the directories, in the order of the directories and sorted by path in each directory
+   */
+  static List<ClassFile> scan(Collection<File> dirs, boolean test) throws IOException {
+    List<ClassFile> classFiles = new ArrayList<>();
+    for (File dir : dirs) {
+      if (!dir.isDirectory()) {
+        continue;
+      }
+      Path canonicalDir = dir.toPath().toRealPath();
+      try {
+        classFiles.addAll(ForkJoinPool.commonPool().invoke(new DirectoryTask(canonicalDir, "", isInWeblogicJspDir(canonicalDir), test)));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+    return classFiles;
+  }
+
+  /**
+   * @return The class files of the project: the class files of its directories and the class files added one by one.
+   * The content of the archives is not listed.
+   */
+  static List<Path> listClassFiles(Project project) throws IOException {
+    List<Path> classFiles = new ArrayList<>();
+    for (String file : project.getFileList()) {
+      Path path = Paths.get(file);
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> stream = Files.walk(path)) {
+          classFiles.addAll(stream.filter(ClassFileScanner::isClassFile).collect(Collectors.toList()));
+        }
+      } else if (isClassFile(path)) {
+        classFiles.add(path);
+      } else {
+        LOG.debug("The classes of the archive {} are not listed", file);
+      }
+    }
+    return classFiles;
+  }
+
+  static boolean isClassFile(Path path) {
+    return Files.isRegularFile(path) && path.getFileName().toString().endsWith(CLASS_EXTENSION);
+  }
+
+  /**
+   * The directory or one of its parents is the output directory of the WebLogic JSP compiler
+   */
+  private static boolean isInWeblogicJspDir(Path canonicalDir) {
+    for (Path dir = canonicalDir; dir != null && dir.getFileName() != null; dir = dir.getParent()) {
+      if (WEBLOGIC_JSP_DIR.equals(dir.getFileName().toString())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class DirectoryTask extends RecursiveTask<List<ClassFile>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Path canonicalDir;
+    private final String packagePrefix;
+    private final boolean inWeblogicJspDir;
+    private final boolean test;
+
+    DirectoryTask(Path canonicalDir, String packagePrefix, boolean inWeblogicJspDir, boolean test) {
+      this.canonicalDir = canonicalDir;
+      this.packagePrefix = packagePrefix;
+      this.inWeblogicJspDir = inWeblogicJspDir;
+      this.test = test;
+    }
+
+    @Override
+    protected List<ClassFile> compute() {
+      List<Path> entries = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(canonicalDir)) {
+        stream.forEach(entries::add);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      Collections.sort(entries);
+
+      List<ClassFile> classFiles = new ArrayList<>();
+      List<DirectoryTask> subTasks = new ArrayList<>();
+      try {
+        for (Path entry : entries) {
+          BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+          Path canonicalEntry = entry;
+          if (attributes.isSymbolicLink()) {
+            // Only the links are made canonical
+            canonicalEntry = entry.toRealPath();
+            attributes = Files.readAttributes(canonicalEntry, BasicFileAttributes.class);
+          }
+
+          String name = entry.getFileName().toString();
+          if (attributes.isDirectory()) {
+            boolean subDirInWeblogicJspDir = inWeblogicJspDir || WEBLOGIC_JSP_DIR.equals(name)
+              || (canonicalEntry != entry && isInWeblogicJspDir(canonicalEntry));
+            subTasks.add(new DirectoryTask(canonicalEntry, packagePrefix + name + '.', subDirInWeblogicJspDir, test));
+          } else if (name.endsWith(CLASS_EXTENSION)) {
+            boolean precompiledJsp = inWeblogicJspDir || JSP_FILE_NAME_PATTERN.matcher(name).matches();
+            String className = packagePrefix + name.substring(0, name.length() - CLASS_EXTENSION.length());
+            classFiles.add(new ClassFile(canonicalEntry.toFile(), className, precompiledJsp, MODULE_INFO.equals(name), test));
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      invokeAll(subTasks);
+      for (DirectoryTask subTask : subTasks) {
+        classFiles.addAll(subTask.join());
+      }
+      return classFiles;
+    }
+  }
+
+  static final class ClassFile {
+    private final File file;
+    private final String className;
+    private final boolean precompiledJsp;
+    private final boolean moduleInfo;
+    private final boolean test;
+
+    ClassFile(File file, String className, boolean precompiledJsp, boolean moduleInfo, boolean test) {
+      this.file = file;
+      this.className = className;
+      this.precompiledJsp = precompiledJsp;
+      this.moduleInfo = moduleInfo;
+      this.test = test;
+    }
+
+    /**
+     * @return The canonical file
+     */
+    File getFile() {
+      return file;
+    }
+
+    /**
+     * @return The binary name of the class, based on the path of the file relative to its binary directory
+     */
+    String getClassName() {
+      return className;
+    }
+
+    boolean isPrecompiledJsp() {
+      return precompiledJsp;
+    }
+
+    boolean isModuleInfo() {
+      return moduleInfo;
+    }
+
+    boolean isTest() {
+      return test;
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.log.Profiler;
+import edu.umd.cs.findbugs.xml.XMLAttributeList;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * Cost of each SpotBugs detector during an analysis: time spent, classes visited and bugs reported.
+ *
+ * The timings are collected by the SpotBugs {@link Profiler} of the engines. The bugs are attributed to the detectors
+ * declaring their bug pattern, a bug pattern reported by several detectors is counted for each of them.
+ */
+final class DetectorProfile {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DetectorProfile.class);
+
+  private final Map<String, ProfileEntry> profileByClass = new HashMap<>();
+  private final Map<String, Integer> bugCountByType = new HashMap<>();
+
+  /**
+   * Add the timings of an engine, the profiles of the shards of an analysis are summed up.
+   * SpotBugs only writes the profiles above 10 milliseconds, the cheaper detectors are left out.
+   */
+  synchronized void addProfiler(Profiler profiler) {
+    // Profiler.writeXML stops after the most expensive classes, the report filter is called for every profile
+    ProfileCapture profileCapture = new ProfileCapture();
+    profiler.report(Comparator.comparing(Class::getName), profile -> {
+      try {
+        profile.writeXML(profileCapture);
+      } catch (IOException e) {
+        LOG.debug("Unable to read the SpotBugs profile", e);
+      }
+      return false;
+    }, new PrintStream(NullOutputStream.NULL_OUTPUT_STREAM));
+  }
+
+  void countBugs(Collection<ReportedBug> reportedBugs) {
+    for (ReportedBug reportedBug : reportedBugs) {
+      bugCountByType.merge(reportedBug.getType(), 1, Integer::sum);
+    }
+  }
+
+  boolean isEmpty() {
+    return profileByClass.isEmpty();
+  }
+
+  /**
+   * @return The profile of the detectors that were executed, most expensive first
+   */
+  List<DetectorCost> getDetectorCosts(Iterable<DetectorFactory> factories) {
+    List<DetectorCost> detectorCosts = new ArrayList<>();
+    for (DetectorFactory factory : factories) {
+      ProfileEntry entry = profileByClass.get(factory.getFullName());
+      if (entry == null) {
+        continue;
+      }
+
+      int bugCount = 0;
+      for (BugPattern bugPattern : factory.getReportedBugPatterns()) {
+        bugCount += bugCountByType.getOrDefault(bugPattern.getType(), 0);
+      }
+      detectorCosts.add(new DetectorCost(factory.getFullName(), factory.getPlugin().getPluginId(), entry.totalMilliseconds, entry.invocations, bugCount));
+    }
+    detectorCosts.sort(Comparator.comparingLong((DetectorCost cost) -> cost.totalMilliseconds).reversed());
+    return detectorCosts;
+  }
+
+  static void writeReport(File reportFile, List<DetectorCost> detectorCosts) throws IOException {
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8))) {
+      writer.println("detector,plugin,totalMilliseconds,classesVisited,bugs");
+      for (DetectorCost cost : detectorCosts) {
+        writer.println(cost.detector + "," + cost.pluginId + "," + cost.totalMilliseconds + "," + cost.classesVisited + "," + cost.bugs);
+      }
+    }
+  }
+
+  static void logSummary(List<DetectorCost> detectorCosts, int maxDetectors) {
+    LOG.info("Most expensive SpotBugs detectors:");
+    for (DetectorCost cost : detectorCosts.subList(0, Math.min(maxDetectors, detectorCosts.size()))) {
+      LOG.info("  {} ({}): {} ms, {} classes visited, {} bugs", cost.detector, cost.pluginId, cost.totalMilliseconds, cost.classesVisited, cost.bugs);
+    }
+  }
+
+  private static class ProfileEntry {
+    private long totalMilliseconds;
+    private long invocations;
+  }
+
+  static class DetectorCost {
+    final String detector;
+    final String pluginId;
+    final long totalMilliseconds;
+    final long classesVisited;
+    final int bugs;
+
+    DetectorCost(String detector, String pluginId, long totalMilliseconds, long classesVisited, int bugs) {
+      this.detector = detector;
+      this.pluginId = pluginId;
+      this.totalMilliseconds = totalMilliseconds;
+      this.classesVisited = classesVisited;
+      this.bugs = bugs;
+    }
+  }
+
+  /**
+   * The profiles are only exposed by {@link Profiler.Profile#writeXML(XMLOutput)}, this output captures the attributes of the ClassProfile elements
+   */
+  private class ProfileCapture implements XMLOutput {
+
+    private Map<String, String> attributes;
+
+    @Override
+    public void startTag(String tagName) {
+      attributes = "ClassProfile".equals(tagName) ? new HashMap<>() : null;
+    }
+
+    @Override
+    public void addAttribute(String name, String value) {
+      if (attributes != null) {
+        attributes.put(name, value);
+      }
+    }
+
+    @Override
+    public void stopTag(boolean close) {
+      if (attributes != null && attributes.containsKey("name")) {
+        ProfileEntry entry = profileByClass.computeIfAbsent(attributes.get("name"), name -> new ProfileEntry());
+        entry.totalMilliseconds += Long.parseLong(attributes.getOrDefault("totalMilliseconds", "0"));
+        entry.invocations += Long.parseLong(attributes.getOrDefault("invocations", "0"));
+      }
+      attributes = null;
+    }
+
+    @Override
+    public void beginDocument() {
+      // nothing to capture
+    }
+
+    @Override
+    public void openTag(String tagName) {
+      // nothing to capture
+    }
+
+    @Override
+    public void openTag(String tagName, XMLAttributeList attributeList) {
+      // nothing to capture
+    }
+
+    @Override
+    public void openCloseTag(String tagName) {
+      // nothing to capture
+    }
+
+    @Override
+    public void openCloseTag(String tagName, XMLAttributeList attributeList) {
+      // nothing to capture
+    }
+
+    @Override
+    public void closeTag(String tagName) {
+      // nothing to capture
+    }
+
+    @Override
+    public void writeText(String text) {
+      // nothing to capture
+    }
+
+    @Override
+    public void writeCDATA(String cdata) {
+      // nothing to capture
+    }
+
+    @Override
+    public void finish() {
+      // nothing to capture
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.TempFolder;
+
+/**
+ * The jars packaged in the plugin (SpotBugs annotations, jsr305, fb-contrib and find-sec-bugs), extracted once for all
+ * the (sub)projects and the scanner executions.
+ *
+ * A jar is extracted in a directory named after the version of the plugin and the identity of the packaged jar: the
+ * CRC-32 and the size of its entry in the plugin jar, or its SHA-256 when the plugin is not packaged. The extracted file
+ * is read-only, its SHA-256, size and modification time are recorded next to it when it is extracted. The following
+ * scanner executions only hash the extracted file again when its size or modification time changed. When the cache
+ * directory can not be written, the jar is extracted in the temporary folder of the scanner execution.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class ExtractedJarCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ExtractedJarCache.class);
+
+  private static final String HASH_FILE_EXTENSION = ".sha256";
+
+  private final TempFolder tempFolder;
+
+  // The jars already extracted by this scanner execution, null for the jars not packaged
+  private final Map<String, File> jars = new HashMap<>();
+  private File tempDir;
+
+  public ExtractedJarCache(TempFolder tempFolder) {
+    this.tempFolder = tempFolder;
+  }
+
+  /**
+   * @param name The path of the jar in the plugin, for instance /jsr305.jar
+   * @param cacheDir The directory shared by the scanner executions, null to extract the jar in the temporary folder
+   * @return The extracted jar, null if the jar is not packaged
+   */
+  @CheckForNull
+  public synchronized File getJar(String name, @Nullable File cacheDir) {
+    if (jars.containsKey(name)) {
+      return jars.get(name);
+    }
+
+    File jar = null;
+    URL packagedJar = getClass().getResource(name);
+    if (packagedJar == null) {
+      // fb-contrib, find-sec-bugs and the Findbugs dependencies are packaged by Maven. They are not available during execution of unit tests.
+      LOG.debug("The jar {} is not packaged", name);
+    } else {
+      if (cacheDir != null) {
+        jar = extractInCache(name, packagedJar, cacheDir);
+      }
+      if (jar == null) {
+        jar = extractInTempDir(name, packagedJar);
+      }
+    }
+    jars.put(name, jar);
+    return jar;
+  }
+
+  @CheckForNull
+  private static File extractInCache(String name, URL packagedJar, File cacheDir) {
+    Path tempFile = null;
+    try {
+      String version = StringUtils.defaultIfEmpty(FindbugsVersion.getVersion(), "unknown");
+      Path dir = cacheDir.toPath().resolve(version).resolve(getPackagedJarId(packagedJar));
+      Path jar = dir.resolve(StringUtils.removeStart(name, "/"));
+      Path hashFile = dir.resolve(jar.getFileName() + HASH_FILE_EXTENSION);
+
+      if (Files.isRegularFile(jar)) {
+        if (isUnchanged(jar, hashFile)) {
+          LOG.debug("Using the extracted jar {}", jar);
+          return jar.toFile();
+        }
+        LOG.warn("The extracted jar {} does not match the jar packaged in the plugin, it is extracted again", jar);
+      }
+
+      Files.createDirectories(dir);
+      // Other scanners may share the directory, the jar is only visible once it is complete
+      tempFile = Files.createTempFile(dir, jar.getFileName().toString(), ".tmp");
+      String hash;
+      try (InputStream input = packagedJar.openStream()) {
+        DigestInputStream digestInput = new DigestInputStream(input, MessageDigest.getInstance("SHA-256"));
+        Files.copy(digestInput, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        hash = Sha256.toHex(digestInput.getMessageDigest().digest());
+      }
+      if (!tempFile.toFile().setReadOnly()) {
+        LOG.debug("Unable to make {} read-only", tempFile);
+      }
+      Files.move(tempFile, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      writeHashFile(hashFile, hash, jar);
+      LOG.debug("Extracted {} in {}", name, jar);
+      return jar.toFile();
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      LOG.debug("Unable to extract {} in the directory {}", name, cacheDir, e);
+      deleteQuietly(tempFile);
+      return null;
+    }
+  }
+
+  /**
+   * @return The CRC-32 and the size of the entry of the jar in the plugin, read from the directory of the plugin jar without
+   * reading the entry, or the SHA-256 of the jar when it is not in a jar (unit tests)
+   */
+  private static String getPackagedJarId(URL packagedJar) throws IOException {
+    URLConnection connection = packagedJar.openConnection();
+    if (connection instanceof JarURLConnection) {
+      JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+      if (entry != null && entry.getCrc() != -1 && entry.getSize() != -1) {
+        return String.format("%08x-%d", entry.getCrc(), entry.getSize());
+      }
+    }
+    try (InputStream input = packagedJar.openStream()) {
+      return Sha256.hash(input);
+    }
+  }
+
+  /**
+   * The extracted jar is only hashed again when its size or modification time is not the one recorded when it was extracted
+   */
+  private static boolean isUnchanged(Path jar, Path hashFile) throws IOException {
+    if (!Files.isRegularFile(hashFile)) {
+      return false;
+    }
+    String[] recorded = StringUtils.split(new String(Files.readAllBytes(hashFile), StandardCharsets.UTF_8).trim(), ' ');
+    if (recorded.length != 3) {
+      return false;
+    }
+    File jarFile = jar.toFile();
+    if (recorded[1].equals(Long.toString(jarFile.length())) && recorded[2].equals(Long.toString(jarFile.lastModified()))) {
+      return true;
+    }
+    if (recorded[0].equals(Sha256.hash(jarFile))) {
+      writeHashFile(hashFile, recorded[0], jar);
+      return true;
+    }
+    return false;
+  }
+
+  private static void writeHashFile(Path hashFile, String hash, Path jar) throws IOException {
+    File jarFile = jar.toFile();
+    String content = hash + ' ' + jarFile.length() + ' ' + jarFile.lastModified();
+    Path tempFile = Files.createTempFile(hashFile.getParent(), hashFile.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tempFile, content.getBytes(StandardCharsets.UTF_8));
+      Files.move(tempFile, hashFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      deleteQuietly(tempFile);
+    }
+  }
+
+  private File extractInTempDir(String name, URL packagedJar) {
+    if (tempDir == null) {
+      tempDir = tempFolder.newDir("findbugs");
+    }
+    File jar = new File(tempDir, name);
+    try (InputStream input = packagedJar.openStream()) {
+      FileUtils.copyInputStreamToFile(input, jar);
+      return jar;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to extract Findbugs dependency " + name, e);
+    }
+  }
+
+  private static void deleteQuietly(@Nullable Path file) {
+    if (file != null) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        LOG.debug("Unable to delete {}", file, e);
+      }
+    }
+  }
+}
@@ -21,25 +21,13 @@ package org.sonar.plugins.findbugs;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringWriter;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Queue;
-import java.util.StringTokenizer;
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,56 +38,78 @@ import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile.Type;
-import org.sonar.api.batch.rule.ActiveRule;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.findbugs.classpath.ClasspathLocator;
-import org.sonar.plugins.findbugs.rules.FbContribRulesDefinition;
-import org.sonar.plugins.findbugs.rules.FindSecurityBugsRulesDefinition;
-import org.sonar.plugins.findbugs.rules.FindbugsRulesDefinition;
-import org.sonar.plugins.findbugs.xml.Bug;
-import org.sonar.plugins.findbugs.xml.FindBugsFilter;
-import org.sonar.plugins.findbugs.xml.Match;
 import org.sonar.plugins.java.Java;
 
-import com.thoughtworks.xstream.XStream;
-
-import edu.umd.cs.findbugs.ClassScreener;
 import edu.umd.cs.findbugs.Project;
 
 @ScannerSide
 public class FindbugsConfiguration implements Startable {
 
   private static final Logger LOG = LoggerFactory.getLogger(FindbugsConfiguration.class);
-  private static final Pattern JSP_FILE_NAME_PATTERN = Pattern.compile(".*_jsp[\\$0-9]*\\.class");
   public static final String SONAR_JAVA_BINARIES = "sonar.java.binaries";
 
   private final FileSystem fileSystem;
   private final Configuration config;
   private final ActiveRules activeRules;
   private final ClasspathLocator classpathLocator;
+  private final ExtractedJarCache jarCache;
+  private final IncludeFilterCache includeFilterCache;
+  private IncludeFilter includeFilter;
 
   public FindbugsConfiguration(FileSystem fileSystem, Configuration config, ActiveRules activeRules,
-      ClasspathLocator classpathLocator) {
+      ClasspathLocator classpathLocator, ExtractedJarCache jarCache, IncludeFilterCache includeFilterCache) {
     this.fileSystem = fileSystem;
     this.config = config;
     this.activeRules = activeRules;
     this.classpathLocator = classpathLocator;
+    this.jarCache = jarCache;
+    this.includeFilterCache = includeFilterCache;
   }
 
   public File getTargetXMLReport() {
     return new File(fileSystem.workDir(), "findbugs-result.xml");
   }
 
+  public File getTargetProfileReport() {
+    return new File(fileSystem.workDir(), "findbugs-profile.csv");
+  }
+
+  /**
+   * @return The directory where the metadata of the auxiliary classpath jars is stored between the analyses
+   */
+  public File getClasspathCacheDir() {
+    Optional<String> cacheDir = config.get(FindbugsConstants.CLASSPATH_CACHE_DIR_PROPERTY);
+    if (cacheDir.isPresent()) {
+      return new File(cacheDir.get().trim());
+    }
+    return new File(getUserCacheDir(), "classpath-cache");
+  }
+
+  /**
+   * @return The directory where the jars packaged in the plugin are extracted, shared by the analyses
+   */
+  public File getJarCacheDir() {
+    return new File(getUserCacheDir(), "jar-cache");
+  }
+
+  private File getUserCacheDir() {
+    File userHome = config.get("sonar.userHome").map(File::new)
+      .orElseGet(() -> new File(System.getProperty("user.home"), ".sonar"));
+    return new File(userHome, "findbugs");
+  }
+
   public void initializeFindbugsProject(Project findbugsProject) throws IOException {
     initializeFindbugsProject(findbugsProject, classpathLocator);
   }
   
   void initializeFindbugsProject(Project findbugsProject, ClasspathLocator classpathLocator) throws IOException {
-    List<File> classFilesToAnalyze = buildClassFilesToAnalyze(classpathLocator);
+    List<ClassFileScanner.ClassFile> classFilesToAnalyze = buildClassFilesToAnalyze(classpathLocator);
 
     for (File file : classpathLocator.classpath()) {
       //Auxiliary dependencies
@@ -113,16 +123,15 @@ public class FindbugsConfiguration implements Startable {
       }
     }
     
-    ClassScreener classScreener = getOnlyAnalyzeFilter();
+    OnlyAnalyzeFilter onlyAnalyzeFilter = getOnlyAnalyzeFilter();
     
-    for (File classToAnalyze : classFilesToAnalyze) {   
-      String absolutePath = classToAnalyze.getCanonicalPath(); 	     
-      
-      boolean matchesClassScreener = classScreener!=null && classScreener.matches(absolutePath);
-      boolean noClassScreenerAndMatches = classScreener == null && !"module-info.class".equals(classToAnalyze.getName());
+    for (ClassFileScanner.ClassFile classToAnalyze : classFilesToAnalyze) {
+      boolean matchesOnlyAnalyzeFilter = onlyAnalyzeFilter != null && onlyAnalyzeFilter.matches(classToAnalyze.getClassName());
+      boolean noOnlyAnalyzeFilterAndMatches = onlyAnalyzeFilter == null && !classToAnalyze.isModuleInfo();
       
-      if(matchesClassScreener || noClassScreenerAndMatches) {
-        findbugsProject.addFile(absolutePath);
+      if(matchesOnlyAnalyzeFilter || noOnlyAnalyzeFilterAndMatches) {
+        // Already canonical
+        findbugsProject.addFile(classToAnalyze.getFile().getPath());
       }
     }    
 
@@ -168,68 +177,19 @@ public class FindbugsConfiguration implements Startable {
   }
 
   /**
-   * Creates a class screener to filter the files for analysis by findbugs.
+   * Creates a filter of the classes to analyze by findbugs.
    * The filter is based on  sonar.findbugs.onlyAnalyze {@link FindbugsConstants} property
    * 
-   * @return ClassScreener object if property is present and not empty, null otherwise.
+   * @return OnlyAnalyzeFilter object if property is present and not empty, null otherwise.
    */
-  protected @Nullable ClassScreener getOnlyAnalyzeFilter() {
-	  ClassScreener classScreener = new ClassScreener();
+  protected @Nullable OnlyAnalyzeFilter getOnlyAnalyzeFilter() {
 	  Optional<String> onlyAnalyzeProp = config.get(FindbugsConstants.ONLY_ANALYZE_PROPERTY);
 	  if(!onlyAnalyzeProp.isPresent() || StringUtils.isEmpty(onlyAnalyzeProp.get())) {
 		  return null;
 	  }
-	  String onlyAnayzeOptions = onlyAnalyzeProp.get();
-	  StringTokenizer tok = new StringTokenizer(onlyAnayzeOptions, ",");
-	  while (tok.hasMoreTokens()) {
-		  String item = tok.nextToken();
-		  if (item.endsWith(".-")) {
-			  classScreener.addAllowedPrefix(item.substring(0, item.length() - 1));
-		  } else if (item.endsWith(".*")) {
-			  classScreener.addAllowedPackage(item.substring(0, item.length() - 1));
-		  } else {
-			  classScreener.addAllowedClass(item);
-		  }
-	  }
-	  return classScreener;
+	  return OnlyAnalyzeFilter.parse(onlyAnalyzeProp.get());
   }
   
-  private void exportProfile(ActiveRules activeRules, Writer writer) {
-    try {
-      FindBugsFilter filter = buildFindbugsFilter(
-        activeRules.findAll().stream().filter(activeRule ->
-        {
-          String repKey = activeRule.ruleKey().repository();
-          return repKey.contains(FindbugsRulesDefinition.REPOSITORY_KEY) ||
-            repKey.contains(FindSecurityBugsRulesDefinition.REPOSITORY_KEY) ||
-            repKey.contains(FbContribRulesDefinition.REPOSITORY_KEY);
-        })
-          .collect(Collectors.toList())
-      );
-      XStream xstream = FindBugsFilter.createXStream();
-      writer.append(xstream.toXML(filter));
-    } catch (IOException e) {
-      throw new IllegalArgumentException("Fail to generate the Findbugs profile configuration", e);
-    }
-  }
-
-  private static FindBugsFilter buildFindbugsFilter(Iterable<ActiveRule> activeRules) {
-    FindBugsFilter root = new FindBugsFilter();
-    for (ActiveRule activeRule : activeRules) {
-      String repoKey = activeRule.ruleKey().repository();
-
-      if (repoKey.contains(FindSecurityBugsRulesDefinition.REPOSITORY_KEY) || repoKey.contains(FindbugsRulesDefinition.REPOSITORY_KEY) || repoKey.contains(FbContribRulesDefinition.REPOSITORY_KEY)) {
-        String internalKey = activeRule.internalKey();
-        if (internalKey != null) {
-          Match child = new Match();
-          child.setBug(new Bug(internalKey));
-          root.addMatch(child);
-        }
-      }
-    }
-    return root;
-  }
-
   /**
    * Determine if the project has Java source files. This is used to determine if the project has no compiled classes on
    * purpose or because the compilation was omit from the process.
@@ -251,20 +211,18 @@ public class FindbugsConfiguration implements Startable {
     );
   }
 
-  File saveIncludeConfigXml() throws IOException {
-    StringWriter conf = new StringWriter();
-    exportProfile(activeRules, conf);
-    File file = new File(fileSystem.workDir(), "findbugs-include.xml");
-    FileUtils.write(file, conf.toString(), StandardCharsets.UTF_8);
-    return file;
+  /**
+   * @return The filter of the active rules, which are only read once per (sub)project
+   */
+  IncludeFilter getIncludeFilter() {
+    if (includeFilter == null) {
+      includeFilter = includeFilterCache.getIncludeFilter(activeRules);
+    }
+    return includeFilter;
   }
   
-  private List<File> buildClassFilesToAnalyze(ClasspathLocator classpathLocator) {
-    Collection<File> binaryDirs = classpathLocator.binaryDirs();
-
-    List<File> classFilesToAnalyze = new ArrayList<>();
-
-    addClassFilesFromClasspath(classFilesToAnalyze, binaryDirs);
+  private List<ClassFileScanner.ClassFile> buildClassFilesToAnalyze(ClasspathLocator classpathLocator) throws IOException {
+    List<ClassFileScanner.ClassFile> classFilesToAnalyze = new ArrayList<>(ClassFileScanner.scan(classpathLocator.binaryDirs(), false));
 
     boolean hasJspFiles = fileSystem.hasFiles(fileSystem.predicates().hasLanguage("jsp"));
     if (hasJspFiles) {
@@ -272,14 +230,16 @@ public class FindbugsConfiguration implements Startable {
     }
 
     if (isAnalyzeTests()) {
-      addClassFilesFromClasspath(classFilesToAnalyze, classpathLocator.testBinaryDirs());
+      List<ClassFileScanner.ClassFile> testClassFiles = ClassFileScanner.scan(classpathLocator.testBinaryDirs(), true);
+      LOG.debug("{} class files found in the binary directories, {} in the test binary directories", classFilesToAnalyze.size(), testClassFiles.size());
+      classFilesToAnalyze.addAll(testClassFiles);
     }
 
     return classFilesToAnalyze;
   }
   
-  public void checkForMissingPrecompiledJsp(List<File> classFilesToAnalyze) {
-    boolean hasPrecompiledJsp = hasPrecompiledJsp(classFilesToAnalyze);
+  private void checkForMissingPrecompiledJsp(List<ClassFileScanner.ClassFile> classFilesToAnalyze) {
+    boolean hasPrecompiledJsp = classFilesToAnalyze.stream().anyMatch(ClassFileScanner.ClassFile::isPrecompiledJsp);
 
     if (!hasPrecompiledJsp) {
       LOG.warn("JSP files were found in the current (sub)project ({}) but FindBugs requires their precompiled form. " +
@@ -287,84 +247,6 @@ public class FindbugsConfiguration implements Startable {
               fileSystem.baseDir().getPath());
     }
   }
-  
-  /**
-   * Updates the class files list by adding all .class files from the classpath
-   * 
-   * @param classFilesToAnalyze The current list of class files to analyze
-   */
-  private void addClassFilesFromClasspath(Collection<File> classFilesToAnalyze, Collection<File> classpath) {
-    addClassFilesFromClasspath(classFilesToAnalyze, classpath, f -> f.getName().endsWith(".class"));
-  }
-  
-  private void addClassFilesFromClasspath(Collection<File> classFilesToAnalyze, Collection<File> classpath, Predicate<File> filePredicate) {
-    for (File file : classpath) {
-      //Will capture additional classes including precompiled JSP
-      if(file.isDirectory()) { // will include "/target/classes" and other non-standard folders
-        classFilesToAnalyze.addAll(scanForAdditionalClasses(file, filePredicate));
-      }
-    }
-  }
-
-  public boolean hasPrecompiledJsp(List<File> classFilesToAnalyze) {
-    for (File classToAnalyze : classFilesToAnalyze) {
-      if(isPrecompiledJspClassFile(classToAnalyze)) {
-        return true;
-      }
-    }
-    
-    return false;
-  }
-
-  public static boolean isPrecompiledJspClassFile(File file) {
-    String fileName = file.getName();
-    
-    //Jasper
-    // Replacement for previous implementation absolutePath.endsWith("_jsp.class") to account for inner classes
-    if (JSP_FILE_NAME_PATTERN.matcher(fileName).matches()) {
-      return true; 
-    }
-    
-    if (fileName.endsWith(".class")) {
-      //WebLogic
-      File parent = file.getParentFile();
-      while (parent != null) {
-        // Replacement for previous implementation absolutePath.contains("/jsp_servlet/") to account for windows paths
-        if (parent.getName().equals("jsp_servlet")) {
-          return true;
-        }
-        
-        parent = parent.getParentFile();
-      }
-    }
-    
-    return false;
-  }
-
-  /**
-   * Scan the given folder for classes. It will catch classes compiled JSP classes.
-   *
-   * @param folder Folder to scan
-   * @param filePredicate The {@link Predicate} applied to filter files (folders are not tested against the predicate)
-   * @return {@code List<File>} of class files
-   */
-  public static List<File> scanForAdditionalClasses(File folder, Predicate<File> filePredicate) {
-    List<File> allFiles = new ArrayList<>();
-    Queue<File> dirs = new LinkedList<>();
-    dirs.add(folder);
-    while (!dirs.isEmpty()) {
-      File dirPoll = dirs.poll();
-      if(dirPoll == null) break; //poll() result could be null if the queue is empty.
-      for (File f : dirPoll.listFiles()) {
-        if (f.isDirectory()) {
-          dirs.add(f);
-        } else if (filePredicate.test(f)) {
-          allFiles.add(f);
-        }
-      }
-    }
-    return allFiles;
-  }
 
   List<File> getExcludesFilters() {
     List<File> result = new ArrayList<>();
@@ -395,6 +277,15 @@ public class FindbugsConfiguration implements Startable {
     return config.getLong(FindbugsConstants.TIMEOUT_PROPERTY).orElse(FindbugsConstants.TIMEOUT_DEFAULT_VALUE);
   }
 
+  /**
+   * @return true if the bugs found before the timeout must be reported instead of failing the analysis
+   */
+  public boolean isPartialResultsOnTimeout() {
+    return FindbugsConstants.TIMEOUT_MODE_PARTIAL.equalsIgnoreCase(
+            config.get(FindbugsConstants.TIMEOUT_MODE_PROPERTY)
+            .orElse(FindbugsConstants.TIMEOUT_MODE_FAIL));
+  }
+
   public boolean isAllowUncompiledCode() {
     return config.getBoolean(FindbugsConstants.ALLOW_UNCOMPILED_CODE).orElse(FindbugsConstants.ALLOW_UNCOMPILED_CODE_VALUE);
   }
@@ -403,23 +294,54 @@ public class FindbugsConfiguration implements Startable {
     return config.getBoolean(FindbugsConstants.ANALYZE_TESTS).orElse(FindbugsConstants.ANALYZE_TESTS_VALUE);
   }
 
+  public boolean isIncrementalAnalysis() {
+    return config.getBoolean(FindbugsConstants.INCREMENTAL_ANALYSIS).orElse(FindbugsConstants.INCREMENTAL_ANALYSIS_VALUE);
+  }
+
+  public int getIncrementalDependentsDepth() {
+    return config.getInt(FindbugsConstants.INCREMENTAL_DEPENDENTS_DEPTH_PROPERTY).orElse(FindbugsConstants.INCREMENTAL_DEPENDENTS_DEPTH_DEFAULT_VALUE);
+  }
+
+  public boolean isPruneClasspath() {
+    return config.getBoolean(FindbugsConstants.PRUNE_CLASSPATH_PROPERTY).orElse(FindbugsConstants.PRUNE_CLASSPATH_DEFAULT_VALUE);
+  }
+
+  public boolean isSkipUnchangedFiles() {
+    return config.getBoolean(FindbugsConstants.SKIP_UNCHANGED_FILES_PROPERTY).orElse(FindbugsConstants.SKIP_UNCHANGED_FILES_DEFAULT_VALUE);
+  }
+
+  public int getParallelism() {
+    return Math.max(1, config.getInt(FindbugsConstants.PARALLELISM_PROPERTY).orElse(FindbugsConstants.PARALLELISM_DEFAULT_VALUE));
+  }
+
+  /**
+   * @return The number of threads mapping the bugs while the analysis is running, 0 when the bugs are mapped after the analysis
+   */
+  public int getIssueMappingThreads() {
+    return Math.max(0, config.getInt(FindbugsConstants.ISSUE_MAPPING_THREADS_PROPERTY).orElse(FindbugsConstants.ISSUE_MAPPING_THREADS_DEFAULT_VALUE));
+  }
+
+  public boolean isForkAnalysis() {
+    return config.getBoolean(FindbugsConstants.FORK_PROPERTY).orElse(FindbugsConstants.FORK_DEFAULT_VALUE);
+  }
+
+  public boolean isXmlReportEnabled() {
+    return config.getBoolean(FindbugsConstants.XML_REPORT_PROPERTY).orElse(FindbugsConstants.XML_REPORT_DEFAULT_VALUE);
+  }
+
+  public List<String> getForkJvmArgs() {
+    return Arrays.asList(StringUtils.split(config.get(FindbugsConstants.FORK_JVM_ARGS_PROPERTY).orElse("")));
+  }
+
   private File jsr305Lib;
   private File annotationsLib;
-  private File fbContrib;
-  private File findSecBugs;
 
   public void copyLibs() {
     if (jsr305Lib == null) {
-      jsr305Lib = copyLib("/jsr305.jar");
+      jsr305Lib = jarCache.getJar("/jsr305.jar", getJarCacheDir());
     }
     if (annotationsLib == null) {
-      annotationsLib = copyLib("/annotations.jar");
-    }
-    if (fbContrib == null) {
-      fbContrib = copyLib("/sb-contrib.jar");
-    }
-    if (findSecBugs == null) {
-      findSecBugs = copyLib("/findsecbugs-plugin.jar");
+      annotationsLib = jarCache.getJar("/annotations.jar", getJarCacheDir());
     }
   }
 
@@ -428,45 +350,9 @@ public class FindbugsConfiguration implements Startable {
     // do nothing
   }
 
-  /**
-   * Invoked by PicoContainer to remove temporary files.
-   */
-  @SuppressWarnings("RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
   @Override
   public void stop() {
-    if (jsr305Lib != null) {
-      jsr305Lib.delete();
-    }
-    if (annotationsLib != null) {
-      annotationsLib.delete();
-    }
-    if (fbContrib != null) {
-      fbContrib.delete();
-    }
-
-    if (findSecBugs != null) {
-      findSecBugs.delete();
-    }
-  }
-
-  private File copyLib(String name) {
-    try (InputStream input = getClass().getResourceAsStream(name)) {
-      File dir = new File(fileSystem.workDir(), "findbugs");
-      FileUtils.forceMkdir(dir);
-      File target = new File(dir, name);
-      FileUtils.copyInputStreamToFile(input, target);
-      return target;
-    } catch (IOException e) {
-      throw new IllegalStateException("Fail to extract Findbugs dependency", e);
-    }
-  }
-
-  public File getFbContribJar() {
-    return fbContrib;
-  }
-
-  public File getFindSecBugsJar() {
-    return findSecBugs;
+    // do nothing, the jars are shared by the (sub)projects and the analyses
   }
 
   public static List<PropertyDefinition> getPropertyDefinitions(Context context) {
@@ -491,6 +377,15 @@ public class FindbugsConfiguration implements Startable {
         .onQualifiers(Qualifiers.PROJECT)
         .type(PropertyType.INTEGER)
         .build(),
+      PropertyDefinition.builder(FindbugsConstants.TIMEOUT_MODE_PROPERTY)
+        .defaultValue(FindbugsConstants.TIMEOUT_MODE_FAIL)
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Timeout mode")
+        .description("Behavior when the timeout is reached. Valid values are 'fail' (the analysis fails) and 'partial' (the engine is stopped " +
+          "and the issues found so far are reported, the classes which were not analyzed are listed in an analysis warning).")
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
       PropertyDefinition.builder(FindbugsConstants.EXCLUDES_FILTERS_PROPERTY)
         .category(Java.KEY)
         .subCategory(subCategory)
@@ -522,7 +417,8 @@ public class FindbugsConfiguration implements Startable {
         .category(Java.KEY)
         .subCategory(subCategory)
         .name("Report Paths")
-        .description("Relative path to SpotBugs report files intended to be reused. (<code>/target/findbugsXml.xml</code> and <code>/target/spotbugsXml.xml</code> are included by default)")
+        .description("Relative path to SpotBugs report files intended to be reused, glob patterns such as <code>build/reports/spotbugs/*.xml</code> are supported. "
+          + "All the matching reports are merged. (<code>/target/findbugsXml.xml</code> and <code>/target/spotbugsXml.xml</code> are included by default)")
         .onQualifiers(Qualifiers.PROJECT)
         .multiValues(true)
         .build(),
@@ -541,6 +437,103 @@ public class FindbugsConfiguration implements Startable {
         .description("Look for bugs in the project test code")
         .onQualifiers(Qualifiers.PROJECT)
         .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.INCREMENTAL_ANALYSIS)
+        .defaultValue(Boolean.toString(FindbugsConstants.INCREMENTAL_ANALYSIS_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Incremental analysis")
+        .description("Use the SonarQube analysis cache to only analyze the classes that changed since the previous analysis (and the classes referencing them). " +
+          "The issues of the other classes are reused from the previous analysis.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.INCREMENTAL_DEPENDENTS_DEPTH_PROPERTY)
+        .defaultValue(Integer.toString(FindbugsConstants.INCREMENTAL_DEPENDENTS_DEPTH_DEFAULT_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Incremental analysis dependents depth")
+        .description("Number of levels of classes depending on a changed class analyzed again by the incremental analysis. " +
+          "1 analyzes the classes referencing a changed class, 0 only the changed classes and a negative value all the classes depending on them.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.PARALLELISM_PROPERTY)
+        .defaultValue(Integer.toString(FindbugsConstants.PARALLELISM_DEFAULT_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Parallelism")
+        .description("Maximum number of SpotBugs engines analyzing the packages of a (sub)project in parallel. " +
+          "Each engine has its own memory footprint, increasing this value also increases the memory consumption.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.FORK_PROPERTY)
+        .defaultValue(Boolean.toString(FindbugsConstants.FORK_DEFAULT_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Separate JVM")
+        .description("Execute SpotBugs in a separate JVM so a (sub)project requiring a lot of memory cannot exhaust the heap of the scanner. " +
+          "When the parallelism is greater than 1, each engine runs in its own JVM.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.FORK_JVM_ARGS_PROPERTY)
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Separate JVM arguments")
+        .description("Options of the JVM executing SpotBugs when the analysis runs in a separate JVM, for instance \"-Xmx2g -XX:+UseParallelGC\".")
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.XML_REPORT_PROPERTY)
+        .defaultValue(Boolean.toString(FindbugsConstants.XML_REPORT_DEFAULT_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("XML report")
+        .description("Write the SpotBugs XML report (findbugs-result.xml) in the working directory. " +
+          "When disabled, the bugs are converted to issues as soon as they are found instead of being kept until the end of the analysis, which reduces the memory consumption.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.ISSUE_MAPPING_THREADS_PROPERTY)
+        .defaultValue(Integer.toString(FindbugsConstants.ISSUE_MAPPING_THREADS_DEFAULT_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Issue mapping threads")
+        .description("Number of threads mapping the SpotBugs bugs to the source files. " +
+          "When greater than 0, the bugs are mapped while SpotBugs is still running if the XML report is disabled. " +
+          "0 maps the bugs on the sensor thread once the analysis is complete.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.CLASSPATH_CACHE_DIR_PROPERTY)
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Classpath cache directory")
+        .description("Directory where the metadata of the auxiliary classpath jars is stored, so the jars shared by several (sub)projects and analyses are only indexed once. " +
+          "Only used when the classpath is pruned. Defaults to findbugs/classpath-cache in the SonarQube user home.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.PRUNE_CLASSPATH_PROPERTY)
+        .defaultValue(Boolean.toString(FindbugsConstants.PRUNE_CLASSPATH_DEFAULT_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Prune classpath")
+        .description("Remove from the SpotBugs auxiliary classpath the jars which do not contain any type referenced by the analyzed classes " +
+          "(or any supertype of these types), the copies of another jar and the jars without any class or resource. " +
+          "It reduces the startup time and the memory consumption of SpotBugs on modules with many dependencies.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(FindbugsConstants.SKIP_UNCHANGED_FILES_PROPERTY)
+        .defaultValue(Boolean.toString(FindbugsConstants.SKIP_UNCHANGED_FILES_DEFAULT_VALUE))
+        .category(Java.KEY)
+        .subCategory(subCategory)
+        .name("Skip unchanged files")
+        .description("When SonarQube allows it (pull request analyses), only analyze the classes compiled from the added or changed source files. " +
+          "The other classes are still used to resolve the types, the issues they would get from the changed code are not reported.")
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
         .build());
   }
 }
@@ -32,6 +32,10 @@ public final class FindbugsConstants {
   public static final String TIMEOUT_PROPERTY = "sonar.findbugs.timeout";
   public static final long TIMEOUT_DEFAULT_VALUE = 600000L;
 
+  public static final String TIMEOUT_MODE_PROPERTY = "sonar.findbugs.timeoutMode";
+  public static final String TIMEOUT_MODE_FAIL = "fail";
+  public static final String TIMEOUT_MODE_PARTIAL = "partial";
+
   public static final String ALLOW_UNCOMPILED_CODE = "sonar.findbugs.allowuncompiledcode";
   public static final boolean ALLOW_UNCOMPILED_CODE_VALUE = false;
 
@@ -45,6 +49,33 @@ public final class FindbugsConstants {
   public static final String ANALYZE_TESTS = "sonar.findbugs.analyzeTests";
   public static final boolean ANALYZE_TESTS_VALUE = true;
 
+  public static final String INCREMENTAL_ANALYSIS = "sonar.findbugs.incremental";
+  public static final boolean INCREMENTAL_ANALYSIS_VALUE = false;
+  public static final String INCREMENTAL_DEPENDENTS_DEPTH_PROPERTY = "sonar.findbugs.incremental.dependentsDepth";
+  public static final int INCREMENTAL_DEPENDENTS_DEPTH_DEFAULT_VALUE = 1;
+
+  public static final String PARALLELISM_PROPERTY = "sonar.findbugs.parallelism";
+  public static final int PARALLELISM_DEFAULT_VALUE = 1;
+
+  public static final String FORK_PROPERTY = "sonar.findbugs.fork";
+  public static final boolean FORK_DEFAULT_VALUE = false;
+
+  public static final String FORK_JVM_ARGS_PROPERTY = "sonar.findbugs.fork.jvmArgs";
+
+  public static final String XML_REPORT_PROPERTY = "sonar.findbugs.xmlReport";
+  public static final boolean XML_REPORT_DEFAULT_VALUE = true;
+
+  public static final String ISSUE_MAPPING_THREADS_PROPERTY = "sonar.findbugs.issueMappingThreads";
+  public static final int ISSUE_MAPPING_THREADS_DEFAULT_VALUE = 0;
+
+  public static final String CLASSPATH_CACHE_DIR_PROPERTY = "sonar.findbugs.classpathCache.dir";
+
+  public static final String PRUNE_CLASSPATH_PROPERTY = "sonar.findbugs.pruneClasspath";
+  public static final boolean PRUNE_CLASSPATH_DEFAULT_VALUE = false;
+
+  public static final String SKIP_UNCHANGED_FILES_PROPERTY = "sonar.findbugs.skipUnchangedFiles";
+  public static final boolean SKIP_UNCHANGED_FILES_DEFAULT_VALUE = false;
+
   private FindbugsConstants() {
   }
 
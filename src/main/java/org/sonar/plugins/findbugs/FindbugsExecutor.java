@@ -20,62 +20,75 @@
 package org.sonar.plugins.findbugs;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import javax.annotation.CheckForNull;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.config.Configuration;
+import org.sonar.api.notifications.AnalysisWarnings;
 import org.sonar.java.annotations.VisibleForTesting;
 
 import edu.umd.cs.findbugs.AnalysisError;
 import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.BugCollectionBugReporter;
 import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.DetectorFactory;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FilterBugReporter;
 import edu.umd.cs.findbugs.FindBugs;
 import edu.umd.cs.findbugs.FindBugs2;
 import edu.umd.cs.findbugs.Plugin;
-import edu.umd.cs.findbugs.PluginException;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.Project;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.XMLBugReporter;
 import edu.umd.cs.findbugs.config.UserPreferences;
-import edu.umd.cs.findbugs.plugins.DuplicatePluginIdException;
 
 @ScannerSide
 public class FindbugsExecutor {
 
-  private static final String FINDBUGS_CORE_PLUGIN_ID = "edu.umd.cs.findbugs.plugins.core";
-
   private static final Logger LOG = LoggerFactory.getLogger(FindbugsExecutor.class);
   public static final List<String> EXISTING_FINDBUGS_REPORT_PATHS = Arrays.asList("/target/findbugsXml.xml","/target/spotbugsXml.xml");
 
   private FileSystem fs;
   private Configuration config;
+  private SensorContext sensorContext;
+  private FindbugsPluginRegistry pluginRegistry;
+  private AnalysisWarnings analysisWarnings;
+  private AuxClasspathCache auxClasspathCache;
 
   /**
    * Map of priority level names to their numeric values.
@@ -91,12 +104,26 @@ public class FindbugsExecutor {
 
   private static final Integer DEFAULT_PRIORITY = Priorities.NORMAL_PRIORITY;
 
+  /**
+   * Maximum time to wait for the engine to stop after it was interrupted, in milliseconds
+   */
+  private static final long ENGINE_STOP_TIMEOUT = 60000L;
+  /**
+   * Number of detectors listed in the log, the report contains all of them
+   */
+  private static final int PROFILE_SUMMARY_SIZE = 10;
+
   private final FindbugsConfiguration configuration;
 
-  public FindbugsExecutor(FindbugsConfiguration configuration, FileSystem fs, Configuration config) {
+  public FindbugsExecutor(FindbugsConfiguration configuration, FileSystem fs, Configuration config, SensorContext sensorContext,
+    FindbugsPluginRegistry pluginRegistry, AnalysisWarnings analysisWarnings, AuxClasspathCache auxClasspathCache) {
     this.configuration = configuration;
     this.fs = fs;
     this.config = config;
+    this.sensorContext = sensorContext;
+    this.pluginRegistry = pluginRegistry;
+    this.analysisWarnings = analysisWarnings;
+    this.auxClasspathCache = auxClasspathCache;
   }
 
   @VisibleForTesting
@@ -109,101 +136,475 @@ public class FindbugsExecutor {
   }
 
   public AnalysisResult execute(boolean useFbContrib, boolean useFindSecBugs) {
+    List<ReportedBug> reportedBugs = new ArrayList<>();
+    Collection<AnalysisError> analysisErrors = execute(useFbContrib, useFindSecBugs, reportedBugs::add);
+    return new AnalysisResult(reportedBugs, analysisErrors);
+  }
+
+  /**
+   * Execute the analysis and hand each bug to the consumer.
+   * When the XML report is disabled, the consumer is invoked by the thread running the SpotBugs engine while the analysis
+   * is still in progress.
+   *
+   * @return The errors reported by the analysis
+   */
+  public Collection<AnalysisError> execute(boolean useFbContrib, boolean useFindSecBugs, Consumer<ReportedBug> bugConsumer) {
+    // The context classloader is only changed for the current thread, and inherited by the thread running the engine
     ClassLoader initialClassLoader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(FindBugs2.class.getClassLoader());
 
-    // This is a dirty workaround, but unfortunately there is no other way to make Findbugs generate english messages only - see SONARJAVA-380
-    Locale initialLocale = Locale.getDefault();
-    Locale.setDefault(Locale.ENGLISH);
-
     OutputStream xmlOutput = null;
-    Collection<Plugin> customPlugins = null;
     ExecutorService executorService = Executors.newSingleThreadExecutor();
-    try (FindBugs2 engine = new FindBugs2(); Project project = new Project()) {
+    try (Project project = new Project()) {
       configuration.initializeFindbugsProject(project);
 
       if(project.getFileCount() == 0) {
         LOG.info("Findbugs analysis skipped for this project.");
-        return new AnalysisResult();
+        return new ArrayList<>();
       }
 
-      customPlugins = loadFindbugsPlugins(useFbContrib,useFindSecBugs);
-
-      disableUpdateChecksOnEveryPlugin();
-
-      engine.setProject(project);
-
-      XMLBugReporter xmlBugReporter = new XMLBugReporter(project);
-      xmlBugReporter.setPriorityThreshold(determinePriorityThreshold());
-      xmlBugReporter.setAddMessages(true);
+      // The classpath is pruned from the references of all the classes, before some of them are moved to the auxiliary classpath
+      if (configuration.isPruneClasspath()) {
+        File classpathCacheDir = configuration.getClasspathCacheDir();
+        auxClasspathCache.removeRedundantJars(project, classpathCacheDir);
+        auxClasspathCache.removeUnreferencedJars(project, classpathCacheDir);
+      }
 
-      File xmlReport = configuration.getTargetXMLReport();
-      LOG.info("Findbugs output report: " + xmlReport.getAbsolutePath());
-      xmlOutput = FileUtils.openOutputStream(xmlReport);
-      xmlBugReporter.setOutputStream(new PrintStream(xmlOutput));
+      boolean pullRequest = configuration.isSkipUnchangedFiles() && sensorContext.canSkipUnchangedFiles();
+      if (pullRequest && createPullRequestAnalysis().selectClassesToAnalyze(project) == 0) {
+        LOG.info("No class compiled from the changed files, SpotBugs analysis skipped.");
+        return new ArrayList<>();
+      }
 
-      engine.setBugReporter(xmlBugReporter);
+      ReusedReport reusedReport = null;
+      List<File> existingReports = findExistingReports();
+      if (!existingReports.isEmpty()) { //Avoid rescanning the project if FindBugs was run already
+        reusedReport = new ReusedReport(existingReports);
+        if (!reusedReport.selectChangedClasses(project)) {
+          reusedReport = null;
+        } else if (project.getFileCount() == 0) {
+          // No engine is needed when the reports are up to date
+          LOG.info("FindBugs reports are already generated {}. Reusing the reports.", existingReports);
+          return readExistingReports(reusedReport, bugConsumer);
+        } else {
+          LOG.info("FindBugs reports {} are older than {} class file(s), these classes are analyzed again and the reports are reused for the other ones",
+            existingReports, project.getFileCount());
+        }
+      }
 
-      UserPreferences userPreferences = UserPreferences.createDefaultUserPreferences();
-      userPreferences.setEffort(configuration.getEffort());
-      engine.setUserPreferences(userPreferences);
+      pluginRegistry.loadPlugins(configuration.getJarCacheDir());
+      Collection<Plugin> excludedPlugins = pluginRegistry.getExcludedPlugins(useFbContrib, useFindSecBugs);
+      IncludeFilter includeFilter = configuration.getIncludeFilter();
+      Set<DetectorFactory> disabledDetectors = selectDisabledDetectors(excludedPlugins, includeFilter);
+      List<File> excludeFilters = getExistingExcludesFilters();
 
-      engine.addFilter(configuration.saveIncludeConfigXml().getAbsolutePath(), true);
+      if (configuration.isXmlReportEnabled()) {
+        File xmlReport = configuration.getTargetXMLReport();
+        LOG.info("Findbugs output report: " + xmlReport.getAbsolutePath());
+        xmlOutput = FileUtils.openOutputStream(xmlReport);
+      }
 
-      for (File filterFile : configuration.getExcludesFilters()) {
-        if (filterFile.isFile()) {
-          LOG.info("Use filter-file: {}", filterFile);
-          engine.addFilter(filterFile.getAbsolutePath(), false);
+      // Replaced by the collection of the engine, stays empty when no class is analyzed
+      SortedBugCollection bugCollection = new SortedBugCollection(project);
+      // Bugs converted to ReportedBug while the engine is running, only when the XML report is not written
+      List<ReportedBug> streamedBugs = null;
+      // False when the analysis was stopped by the timeout
+      boolean complete = true;
+      Collection<ReportedBug> reportedBugs = null;
+      Collection<? extends AnalysisError> analysisErrors = null;
+      // Only filled by the engines running in this JVM
+      DetectorProfile detectorProfile = new DetectorProfile();
+      // The classes to analyze were already selected when a report is reused, or by the pull request analysis whose
+      // partial results must not be saved in the cache
+      IncrementalAnalysis incrementalAnalysis = reusedReport == null && !pullRequest ? createIncrementalAnalysis(project, includeFilter, useFbContrib, useFindSecBugs) : null;
+
+      if (incrementalAnalysis == null || incrementalAnalysis.selectClassesToAnalyze(project) > 0) {
+        int parallelism = configuration.getParallelism();
+
+        ForkedAnalysis forkedAnalysis = createForkedAnalysis(useFbContrib, useFindSecBugs);
+
+        if (parallelism > 1 && project.getFileCount() > 1) {
+          List<String> filesNotAnalyzed = new ArrayList<>();
+          bugCollection = executeShards(project, includeFilter, excludeFilters, disabledDetectors, forkedAnalysis, parallelism, detectorProfile,
+            filesNotAnalyzed);
+          if (!filesNotAnalyzed.isEmpty()) {
+            complete = false;
+            try (Project projectNotAnalyzed = AnalysisShards.createShardProject(project, filesNotAnalyzed)) {
+              reportClassesNotAnalyzed(AnalysisProgress.listClassNames(projectNotAnalyzed));
+            }
+          }
+          writeXmlReport(bugCollection, xmlOutput);
+        } else if (forkedAnalysis != null) {
+          if (configuration.isPartialResultsOnTimeout()) {
+            LOG.warn("The partial results on timeout are not supported by the analysis in a separate JVM without parallelism, the analysis will fail on timeout");
+          }
+          bugCollection = forkedAnalysis.execute(project, includeFilter, excludeFilters, disabledDetectors, configuration.getTimeout());
+          writeXmlReport(bugCollection, xmlOutput);
         } else {
-          LOG.warn("FindBugs filter-file not found: {}", filterFile);
+          // The engine is only built for the analysis in this JVM, the shards and the forked analysis build their own
+          try (FindBugs2 engine = new FindBugs2()) {
+            BugReporter bugReporter;
+            StreamingBugReporter streamingBugReporter = null;
+            if (xmlOutput != null) {
+              XMLBugReporter xmlBugReporter = new XMLBugReporter(project);
+              xmlBugReporter.setAddMessages(true);
+              xmlBugReporter.setOutputStream(new PrintStream(xmlOutput));
+
+              bugReporter = xmlBugReporter;
+              bugCollection = (SortedBugCollection) xmlBugReporter.getBugCollection();
+            } else {
+              // The duplicates were already dropped by the reporter
+              List<ReportedBug> bugs = new ArrayList<>();
+              streamedBugs = bugs;
+              streamingBugReporter = new StreamingBugReporter(bug -> {
+                bugs.add(bug);
+                bugConsumer.accept(bug);
+              });
+
+              bugReporter = streamingBugReporter;
+            }
+            bugReporter.setPriorityThreshold(determinePriorityThreshold());
+
+            configureEngine(engine, project, bugReporter, includeFilter, excludeFilters, disabledDetectors);
+
+            AnalysisProgress analysisProgress = new AnalysisProgress();
+            engine.addClassObserver(analysisProgress);
+            Future<Object> future = executorService.submit(new FindbugsTask(engine));
+            try {
+              future.get(configuration.getTimeout(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+              if (!configuration.isPartialResultsOnTimeout()) {
+                throw e;
+              }
+              stopEngine(future, executorService);
+              complete = false;
+              reportClassesNotAnalyzed(analysisProgress.getClassesNotAnalyzed(project));
+              // The reporter was not finished by the engine
+              writeXmlReport(bugCollection, xmlOutput);
+            }
+            detectorProfile.addProfiler(bugReporter.getProjectStats().getProfiler());
+            if (streamingBugReporter != null) {
+              reportedBugs = streamedBugs;
+              analysisErrors = streamingBugReporter.getAnalysisErrors();
+            }
+          }
+        }
+      }
+      if (reportedBugs == null) {
+        reportedBugs = toReportedBugs(bugCollection);
+        analysisErrors = bugCollection.getErrors();
+      }
+      if (!detectorProfile.isEmpty()) {
+        reportDetectorProfile(detectorProfile, reportedBugs);
+      }
+      if (incrementalAnalysis != null) {
+        reportedBugs = incrementalAnalysis.mergeWithCachedBugs(reportedBugs);
+        // When some classes were not analyzed, their missing results must not be reused by the next analysis
+        if (complete) {
+          incrementalAnalysis.save(sensorContext.nextCache());
         }
       }
 
-      engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
-      engine.setAnalysisFeatureSettings(FindBugs.DEFAULT_EFFORT);
-
-      engine.finishSettings();
-
-      //Load findbugs report location
-      List<String> potentialReportPaths = new ArrayList<>();
-      potentialReportPaths.addAll(EXISTING_FINDBUGS_REPORT_PATHS);
-      String[] paths = config.getStringArray(FindbugsConstants.REPORT_PATHS);
-      if(paths != null) potentialReportPaths.addAll(Arrays.asList(paths));
-      boolean foundExistingReport = false;
-
-      //Look for existing reports relative to subproject directory
-      reportPaths : for(String potentialPath : potentialReportPaths) {
-        File findbugsReport = new File(fs.baseDir(), potentialPath);
-        
-        // File.length() is unspecified for directories
-        if(findbugsReport.exists() && !findbugsReport.isDirectory() && findbugsReport.length() > 0) {
-          LOG.info("FindBugs report is already generated {}. Reusing the report.",findbugsReport.getAbsolutePath());
-          xmlBugReporter.getBugCollection().readXML(new FileReader(findbugsReport));
-          foundExistingReport = true;
-          break reportPaths;
+      // The streamed bugs were handed to the consumer while the engine was running. Several bugs may be converted to
+      // equal ReportedBug, so they are compared by identity
+      Set<ReportedBug> consumedBugs = Collections.newSetFromMap(new IdentityHashMap<>());
+      if (streamedBugs != null) {
+        consumedBugs.addAll(streamedBugs);
+      }
+      for (ReportedBug reportedBug : reportedBugs) {
+        if (!consumedBugs.contains(reportedBug)) {
+          bugConsumer.accept(reportedBug);
         }
       }
 
-      if(!foundExistingReport) { //Avoid rescanning the project if FindBugs was run already
-        executorService.submit(new FindbugsTask(engine)).get(configuration.getTimeout(), TimeUnit.MILLISECONDS);
+      List<AnalysisError> allAnalysisErrors = new ArrayList<>(analysisErrors);
+      if (reusedReport != null) {
+        // The bugs of the classes which did not change are read from the report
+        reusedReport.setReanalyzedBugs(reportedBugs);
+        allAnalysisErrors.addAll(readExistingReports(reusedReport, bugConsumer));
       }
-      Collection<ReportedBug> reportedBugs = toReportedBugs(xmlBugReporter.getBugCollection());
-      Collection<? extends AnalysisError> analysisErrors = ((SortedBugCollection) xmlBugReporter.getBugCollection()).getErrors();
-      
-      return new AnalysisResult(reportedBugs, analysisErrors);
+      return allAnalysisErrors;
     } catch (TimeoutException e) {
       throw new IllegalStateException("Can not execute Findbugs with a timeout threshold value of " + configuration.getTimeout() + " milliseconds", e);
     } catch (Exception e) {
       throw new IllegalStateException("Can not execute Findbugs", e);
     } finally {
-      resetCustomPluginList(customPlugins);
       executorService.shutdown();
       IOUtils.closeQuietly(xmlOutput);
       Thread.currentThread().setContextClassLoader(initialClassLoader);
-      Locale.setDefault(initialLocale);
     }
   }
 
+  /**
+   * Look for existing reports relative to subproject directory
+   *
+   * @return All the non empty reports, they are merged
+   */
+  private List<File> findExistingReports() throws IOException {
+    List<String> potentialReportPaths = new ArrayList<>();
+    potentialReportPaths.addAll(EXISTING_FINDBUGS_REPORT_PATHS);
+    String[] paths = config.getStringArray(FindbugsConstants.REPORT_PATHS);
+    if(paths != null) potentialReportPaths.addAll(Arrays.asList(paths));
+
+    return ReusedReport.findReports(fs.baseDir(), potentialReportPaths);
+  }
+
+  /**
+   * Stream the bugs of the existing reports to the consumer, the bugs without an active rule are skipped while parsing.
+   * The bugs of the classes which changed since the reports were generated are skipped too.
+   * The reports are parsed in parallel, a bug found in several reports (same type, class and line) is reported once.
+   */
+  private Collection<AnalysisError> readExistingReports(ReusedReport reusedReport, Consumer<ReportedBug> bugConsumer)
+    throws InterruptedException, ExecutionException {
+    Predicate<String> activeBugTypes = configuration.getIncludeFilter().getBugTypes()::contains;
+    Set<String> uniqueBugs = ConcurrentHashMap.newKeySet();
+    List<AnalysisError> analysisErrors = new ArrayList<>();
+    // The consumer is not expected to be thread safe
+    Object consumerLock = new Object();
+
+    List<File> reports = reusedReport.getReports();
+    ExecutorService parserExecutorService = Executors.newFixedThreadPool(Math.min(reports.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (File report : reports) {
+        futures.add(parserExecutorService.submit(() -> new FindbugsXmlReportParser(report).readReport(activeBugTypes, xmlBugInstance -> {
+          ReportedBug reportedBug = toReportedBug(xmlBugInstance);
+          if (reportedBug != null && reusedReport.isUpToDate(reportedBug)
+            && uniqueBugs.add(reportedBug.getType() + '|' + reportedBug.getClassName() + '|' + reportedBug.getStartLine())) {
+            synchronized (consumerLock) {
+              bugConsumer.accept(reportedBug);
+            }
+          }
+        }, errorMessage -> {
+          synchronized (consumerLock) {
+            analysisErrors.add(new AnalysisError(errorMessage));
+          }
+        })));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      parserExecutorService.shutdownNow();
+    }
+
+    return analysisErrors;
+  }
+
+  /**
+   * The plugins are shared by all the modules: the detectors of the plugins not requested by this module are disabled,
+   * along with the detectors which only report bug patterns without active rule.
+   * The detectors without any reported pattern (training, first pass, etc.) are kept, and SpotBugs enables again the
+   * disabled detectors required by the enabled ones.
+   */
+  @VisibleForTesting
+  Set<DetectorFactory> selectDisabledDetectors(Collection<Plugin> excludedPlugins, IncludeFilter includeFilter) {
+    Predicate<String> activeBugTypes = includeFilter.getBugTypes()::contains;
+    Set<DetectorFactory> disabledDetectors = new LinkedHashSet<>();
+    int inactiveDetectors = 0;
+    int detectorCount = 0;
+
+    for (DetectorFactory factory : DetectorFactoryCollection.instance().getFactories()) {
+      if (excludedPlugins.contains(factory.getPlugin())) {
+        disabledDetectors.add(factory);
+        continue;
+      }
+      detectorCount++;
+      Set<BugPattern> bugPatterns = factory.getReportedBugPatterns();
+      if (factory.isReportingDetector() && !bugPatterns.isEmpty()
+        && bugPatterns.stream().map(BugPattern::getType).noneMatch(activeBugTypes)) {
+        LOG.debug("Disabling the detector {}, none of its bug patterns is active", factory.getShortName());
+        disabledDetectors.add(factory);
+        inactiveDetectors++;
+      }
+    }
+
+    LOG.info("{} of {} SpotBugs detectors disabled, they do not report any active rule", inactiveDetectors, detectorCount);
+    return disabledDetectors;
+  }
+
+  @CheckForNull
+  private ReportedBug toReportedBug(FindbugsXmlReportParser.XmlBugInstance xmlBugInstance) {
+    FindbugsXmlReportParser.XmlSourceLineAnnotation sourceLine = xmlBugInstance.getPrimarySourceLine();
+    if (sourceLine == null) {
+      LOG.warn("No source line for " + xmlBugInstance.getType());
+      return null;
+    }
+
+    String message = xmlBugInstance.getLongMessage();
+    if (message.isEmpty()) {
+      // The report was generated without the messages
+      message = getBugPatternDescription(xmlBugInstance.getType());
+    }
+
+    String sourcePath = sourceLine.getSourcePath();
+    if (sourcePath == null) {
+      sourcePath = sourceLine.getSonarJavaFileKey().replace('.', '/') + ".java";
+    }
+    int startLine = sourceLine.getStart() == null ? -1 : sourceLine.getStart();
+
+    return new ReportedBug(xmlBugInstance.getType(), message, sourceLine.getClassName(), startLine, sourcePath);
+  }
+
+  private String getBugPatternDescription(String type) {
+    pluginRegistry.loadPlugins(configuration.getJarCacheDir());
+    BugPattern bugPattern = DetectorFactoryCollection.instance().lookupBugPattern(type);
+    return bugPattern == null ? type : bugPattern.getShortDescription();
+  }
+
+  private void reportDetectorProfile(DetectorProfile detectorProfile, Collection<ReportedBug> reportedBugs) throws IOException {
+    detectorProfile.countBugs(reportedBugs);
+    List<DetectorProfile.DetectorCost> detectorCosts = detectorProfile.getDetectorCosts(DetectorFactoryCollection.instance().getFactories());
+
+    File profileReport = configuration.getTargetProfileReport();
+    LOG.info("Findbugs detector profile: " + profileReport.getAbsolutePath());
+    DetectorProfile.writeReport(profileReport, detectorCosts);
+    DetectorProfile.logSummary(detectorCosts, PROFILE_SUMMARY_SIZE);
+  }
+
+  /**
+   * Interrupt the engine and wait until it has stopped, so the bugs reported so far can be read safely
+   */
+  private static void stopEngine(Future<Object> future, ExecutorService executorService) throws InterruptedException, TimeoutException {
+    future.cancel(true);
+    executorService.shutdown();
+    if (!executorService.awaitTermination(ENGINE_STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+      throw new TimeoutException("SpotBugs did not stop within " + ENGINE_STOP_TIMEOUT + " milliseconds after the timeout");
+    }
+  }
+
+  private void reportClassesNotAnalyzed(Set<String> classesNotAnalyzed) {
+    String message = "The SpotBugs analysis was stopped after " + configuration.getTimeout() + " milliseconds, the issues found so far are reported. " +
+      classesNotAnalyzed.size() + " classes were not analyzed.";
+    LOG.warn(message);
+    LOG.info("Classes not analyzed by SpotBugs: {}", classesNotAnalyzed);
+    analysisWarnings.addUnique(message);
+  }
+
+  private static void writeXmlReport(SortedBugCollection bugCollection, OutputStream xmlOutput) throws IOException {
+    if (xmlOutput != null) {
+      bugCollection.writeXML(xmlOutput);
+    }
+  }
+
+  private void configureEngine(FindBugs2 engine, Project project, BugReporter bugReporter, IncludeFilter includeFilter, List<File> excludeFilters,
+    Set<DetectorFactory> disabledDetectors) throws IOException {
+    engine.setProject(project);
+    // Same reporter as the one created by engine.addFilter(), without writing and parsing a filter file
+    engine.setBugReporter(new FilterBugReporter(bugReporter, includeFilter, true));
+
+    UserPreferences userPreferences = UserPreferences.createDefaultUserPreferences();
+    userPreferences.setEffort(configuration.getEffort());
+    engine.setUserPreferences(userPreferences);
+
+    for (File filterFile : excludeFilters) {
+      engine.addFilter(filterFile.getAbsolutePath(), false);
+    }
+
+    for (DetectorFactory factory : disabledDetectors) {
+      userPreferences.enableDetector(factory, false);
+    }
+
+    DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+    engine.setDetectorFactoryCollection(detectorFactoryCollection);
+    engine.setAnalysisFeatureSettings(FindBugs.DEFAULT_EFFORT);
+
+    engine.finishSettings();
+  }
+
+  private List<File> getExistingExcludesFilters() {
+    List<File> excludeFilters = new ArrayList<>();
+    for (File filterFile : configuration.getExcludesFilters()) {
+      if (filterFile.isFile()) {
+        LOG.info("Use filter-file: {}", filterFile);
+        excludeFilters.add(filterFile);
+      } else {
+        LOG.warn("FindBugs filter-file not found: {}", filterFile);
+      }
+    }
+    return excludeFilters;
+  }
+
+  /**
+   * Analyze the project with several SpotBugs engines running in parallel, each engine analyzes a subset of the packages
+   *
+   * @param filesNotAnalyzed Filled with the files of the shards stopped by the timeout when the partial results are enabled
+   */
+  private SortedBugCollection executeShards(Project project, IncludeFilter includeFilter, List<File> excludeFilters, Set<DetectorFactory> disabledDetectors,
+    ForkedAnalysis forkedAnalysis, int maxShards, DetectorProfile detectorProfile, List<String> filesNotAnalyzed)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    List<List<String>> shards = AnalysisShards.partition(project.getFileList(), maxShards);
+    LOG.info("Running {} SpotBugs engines in parallel to analyze {} classes", shards.size(), project.getFileCount());
+
+    ExecutorService shardExecutorService = Executors.newFixedThreadPool(shards.size());
+    try {
+      List<Future<SortedBugCollection>> futures = new ArrayList<>();
+      for (List<String> shardFiles : shards) {
+        futures.add(shardExecutorService.submit(() -> executeShard(project, shardFiles, includeFilter, excludeFilters, disabledDetectors, forkedAnalysis, detectorProfile)));
+      }
+
+      long deadline = System.currentTimeMillis() + configuration.getTimeout();
+      List<SortedBugCollection> shardResults = new ArrayList<>();
+      for (int i = 0; i < futures.size(); i++) {
+        Future<SortedBugCollection> future = futures.get(i);
+        try {
+          shardResults.add(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+          if (!configuration.isPartialResultsOnTimeout()) {
+            throw e;
+          }
+          // The issues of a shard are only known when its engine completes, the shards still running are stopped
+          future.cancel(true);
+          filesNotAnalyzed.addAll(shards.get(i));
+        }
+      }
+
+      if (!filesNotAnalyzed.isEmpty()) {
+        shardExecutorService.shutdownNow();
+        if (!shardExecutorService.awaitTermination(ENGINE_STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+          throw new TimeoutException("SpotBugs did not stop within " + ENGINE_STOP_TIMEOUT + " milliseconds after the timeout");
+        }
+      }
+
+      return AnalysisShards.merge(project, shardResults);
+    } finally {
+      shardExecutorService.shutdownNow();
+    }
+  }
+
+  private SortedBugCollection executeShard(Project project, List<String> files, IncludeFilter includeFilter, List<File> excludeFilters,
+    Set<DetectorFactory> disabledDetectors, ForkedAnalysis forkedAnalysis, DetectorProfile detectorProfile) throws IOException, InterruptedException, TimeoutException {
+    if (forkedAnalysis != null) {
+      try (Project shardProject = AnalysisShards.createShardProject(project, files)) {
+        // The shards share the timeout of the whole analysis, the worker is killed when the shard is cancelled
+        return forkedAnalysis.execute(shardProject, includeFilter, excludeFilters, disabledDetectors, configuration.getTimeout());
+      }
+    }
+
+    try (FindBugs2 engine = new FindBugs2(); Project shardProject = AnalysisShards.createShardProject(project, files)) {
+      BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(shardProject);
+      bugReporter.setPriorityThreshold(determinePriorityThreshold());
+
+      configureEngine(engine, shardProject, bugReporter, includeFilter, excludeFilters, disabledDetectors);
+      engine.execute();
+      detectorProfile.addProfiler(bugReporter.getProjectStats().getProfiler());
+
+      return (SortedBugCollection) bugReporter.getBugCollection();
+    }
+  }
+
+  /**
+   * @return The analysis in a separate JVM if it is enabled, null otherwise
+   */
+  private ForkedAnalysis createForkedAnalysis(boolean useFbContrib, boolean useFindSecBugs) {
+    if (!configuration.isForkAnalysis()) {
+      return null;
+    }
+    File workDir = new File(configuration.getTargetXMLReport().getParentFile(), "findbugs-worker");
+    return new ForkedAnalysis(workDir, configuration.getForkJvmArgs(), pluginRegistry.getPluginJars(useFbContrib, useFindSecBugs),
+      configuration.getEffort(), determinePriorityThreshold());
+  }
+
   private static Collection<ReportedBug> toReportedBugs(BugCollection bugCollection) {
     // We need to retrieve information such as the message before we shut everything down as we will lose any custom
     // bug messages
@@ -220,6 +621,64 @@ public class FindbugsExecutor {
     return bugs;
   }
 
+  private PullRequestAnalysis createPullRequestAnalysis() {
+    FilePredicates predicates = fs.predicates();
+    List<String> changedFiles = new ArrayList<>();
+    for (InputFile inputFile : fs.inputFiles(predicates.or(predicates.hasStatus(InputFile.Status.ADDED), predicates.hasStatus(InputFile.Status.CHANGED)))) {
+      changedFiles.add(new File(inputFile.uri()).getPath());
+    }
+    return new PullRequestAnalysis(changedFiles);
+  }
+
+  /**
+   * @return The incremental analysis if it is enabled and the analysis cache is available, null otherwise
+   */
+  private IncrementalAnalysis createIncrementalAnalysis(Project project, IncludeFilter includeFilter, boolean useFbContrib, boolean useFindSecBugs) throws IOException {
+    if (!configuration.isIncrementalAnalysis()) {
+      return null;
+    }
+    if (!sensorContext.isCacheEnabled()) {
+      LOG.info("The analysis cache is disabled, the incremental SpotBugs analysis is not possible");
+      return null;
+    }
+
+    String cacheKey = IncrementalAnalysis.CACHE_KEY_PREFIX + sensorContext.module().key();
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(cacheKey, buildAnalysisFingerprint(project, includeFilter, useFbContrib, useFindSecBugs),
+      configuration.getIncrementalDependentsDepth());
+    incrementalAnalysis.loadPreviousEntries(sensorContext.previousCache());
+
+    return incrementalAnalysis;
+  }
+
+  /**
+   * The results of a previous analysis can only be reused if it was executed with the same settings
+   */
+  private String buildAnalysisFingerprint(Project project, IncludeFilter includeFilter, boolean useFbContrib, boolean useFindSecBugs) throws IOException {
+    StringBuilder fingerprint = new StringBuilder();
+    fingerprint.append(FindbugsVersion.getVersion())
+      .append('|').append(useFbContrib)
+      .append('|').append(useFindSecBugs)
+      .append('|').append(configuration.getEffort())
+      .append('|').append(configuration.getConfidenceLevel())
+      .append('|').append(includeFilter.getFingerprint());
+
+    for (File filterFile : configuration.getExcludesFilters()) {
+      if (filterFile.isFile()) {
+        fingerprint.append('|').append(Sha256.hash(filterFile));
+      }
+    }
+
+    // The absolute paths depend on the build agent, the names and sizes of the libraries are enough to detect a change
+    for (String auxClasspathEntry : project.getAuxClasspathEntryList()) {
+      File file = new File(auxClasspathEntry);
+      if (file.isFile()) {
+        fingerprint.append('|').append(file.getName()).append(':').append(file.length());
+      }
+    }
+
+    return Sha256.hash(fingerprint.toString());
+  }
+
   private Integer determinePriorityThreshold() {
     Integer integer = priorityNameToValueMap.get(configuration.getConfidenceLevel());
     if (integer == null) {
@@ -249,82 +708,4 @@ public class FindbugsExecutor {
     }
   }
 
-  private Collection<Plugin> loadFindbugsPlugins(boolean useFbContrib,boolean useFindSecBugs) {
-    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
-
-    List<String> pluginJarPathList = new ArrayList<>();
-    try {
-      Enumeration<URL> urls = contextClassLoader.getResources("findbugs.xml");
-      while (urls.hasMoreElements()) {
-        URL url = urls.nextElement();
-        pluginJarPathList.add(normalizeUrl(url));
-      }
-      //Add fb-contrib plugin.
-      if (useFbContrib && configuration.getFbContribJar() != null) {
-        // fb-contrib plugin is packaged by Maven. It is not available during execution of unit tests.
-        pluginJarPathList.add(configuration.getFbContribJar().getAbsolutePath());
-      }
-      //Add find-sec-bugs plugin. (same as fb-contrib)
-      if (useFindSecBugs && configuration.getFindSecBugsJar() != null) {
-        pluginJarPathList.add(configuration.getFindSecBugsJar().getAbsolutePath());
-      }
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
-    } catch (URISyntaxException e) {
-      throw new IllegalStateException(e);
-    }
-    List<Plugin> customPluginList = new ArrayList<>();
-
-    for (String path : pluginJarPathList) {
-      try {
-        Plugin plugin = Plugin.addCustomPlugin(new File(path).toURI(), contextClassLoader);
-        if (plugin != null) {
-          customPluginList.add(plugin);
-          LOG.info("Loading findbugs plugin: " + path);
-        }
-      } catch (PluginException e) {
-        LOG.warn("Failed to load plugin for custom detector: " + path);
-        LOG.debug("Cause of failure", e);
-      } catch (DuplicatePluginIdException e) {
-        // FB Core plugin is always loaded, so we'll get an exception for it always
-        if (!FINDBUGS_CORE_PLUGIN_ID.equals(e.getPluginId())) {
-          // log only if it's not the FV Core plugin
-          LOG.debug("Plugin already loaded: exception ignored: " + e.getMessage(), e);
-        }
-      }
-    }
-
-    return customPluginList;
-  }
-
-  private static String normalizeUrl(URL url) throws URISyntaxException {
-    return Strings.CS.removeStart(StringUtils.substringBefore(url.toURI().getSchemeSpecificPart(), "!"), "file:");
-  }
-
-  /**
-   * Disable the update check for every plugin. See http://findbugs.sourceforge.net/updateChecking.html
-   */
-  private static void disableUpdateChecksOnEveryPlugin() {
-    for (Plugin plugin : Plugin.getAllPlugins()) {
-      plugin.setMyGlobalOption("noUpdateChecks", "true");
-    }
-  }
-
-  private static void resetCustomPluginList(Collection<Plugin> customPlugins) {
-    if (customPlugins != null) {
-      for (Plugin plugin : customPlugins) {
-        Plugin.removeCustomPlugin(plugin);
-
-        try {
-          // We have copied the plugin jar in the project's build directory
-          // Now we need to close the classloaders pointing to that jar
-          // so we do not prevent the deletion of the build folder
-          plugin.close();
-        } catch (IOException e) {
-          LOG.error("Error closing plugin", e);
-        }
-      }
-    }
-  }
-
 }
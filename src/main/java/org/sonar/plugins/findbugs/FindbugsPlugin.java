@@ -78,6 +78,7 @@ public class FindbugsPlugin implements Plugin {
             FindbugsSensor.class,
             FindbugsConfiguration.class,
             FindbugsExecutor.class,
+            FindbugsPluginRegistry.class,
 
             FindbugsProfileImporter.class,
             FindbugsProfile.class,
@@ -93,7 +94,10 @@ public class FindbugsPlugin implements Plugin {
             FindSecurityBugsJspRulesDefinition.class,
             FindSecurityBugsScalaRulesDefinition.class,
             DefaultClasspathLocator.class,
-            ByteCodeResourceLocator.class));
+            ByteCodeResourceLocator.class,
+            AuxClasspathCache.class,
+            ExtractedJarCache.class,
+            IncludeFilterCache.class));
     
     Version apiVersion = context.getRuntime().getApiVersion();
     
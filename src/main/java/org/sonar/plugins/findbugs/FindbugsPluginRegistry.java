@@ -0,0 +1,220 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.Startable;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.I18N;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.PluginException;
+import edu.umd.cs.findbugs.plugins.DuplicatePluginIdException;
+
+/**
+ * Load the SpotBugs plugins once for the whole scanner execution.
+ *
+ * Loading a plugin means extracting its jar (see {@link ExtractedJarCache}), creating its classloader and parsing its descriptors. The plugins are
+ * loaded when the first (sub)project is analyzed and kept until the end of the analysis, the {@link edu.umd.cs.findbugs.DetectorFactoryCollection}
+ * built from them is then shared by all the (sub)projects.
+ * A (sub)project not using fb-contrib or find-sec-bugs disables the detectors of the plugins returned by {@link #getExcludedPlugins(boolean, boolean)}
+ * in the preferences of its engine, so the registry can be shared by (sub)projects analyzed at the same time.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class FindbugsPluginRegistry implements Startable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FindbugsPluginRegistry.class);
+
+  private static final String FINDBUGS_CORE_PLUGIN_ID = "edu.umd.cs.findbugs.plugins.core";
+  private static final String FB_CONTRIB_PLUGIN_ID = "com.mebigfatguy.fbcontrib";
+  private static final String FIND_SEC_BUGS_PLUGIN_ID = "com.h3xstream.findsecbugs";
+
+  private final ExtractedJarCache jarCache;
+
+  private final List<Plugin> customPlugins = new ArrayList<>();
+  private boolean loaded;
+
+  public FindbugsPluginRegistry(ExtractedJarCache jarCache) {
+    this.jarCache = jarCache;
+  }
+
+  /**
+   * Load the plugins if it was not already done by a previous (sub)project
+   *
+   * @param jarCacheDir The directory where the plugin jars are extracted, null to extract them in the temporary folder
+   */
+  public synchronized void loadPlugins(@Nullable File jarCacheDir) {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+
+    // SpotBugs reads the default locale when its messages and the messages of the plugins are loaded, and never again.
+    // The locale is only changed while the plugins are loaded so the messages are in English - see SONARJAVA-380
+    Locale initialLocale = Locale.getDefault();
+    Locale.setDefault(Locale.ENGLISH);
+    try {
+      I18N.instance();
+      DetectorFactoryCollection.instance();
+
+      ClassLoader classLoader = FindBugs2.class.getClassLoader();
+      try {
+        Enumeration<URL> urls = classLoader.getResources("findbugs.xml");
+        while (urls.hasMoreElements()) {
+          loadPlugin(new File(normalizeUrl(urls.nextElement())), classLoader);
+        }
+      } catch (IOException | URISyntaxException e) {
+        throw new IllegalStateException(e);
+      }
+
+      // fb-contrib and find-sec-bugs plugins are packaged by Maven. They are not available during execution of unit tests.
+      for (String pluginJarName : Arrays.asList("/sb-contrib.jar", "/findsecbugs-plugin.jar")) {
+        File pluginJar = jarCache.getJar(pluginJarName, jarCacheDir);
+        if (pluginJar != null) {
+          loadPlugin(pluginJar, classLoader);
+        }
+      }
+    } finally {
+      Locale.setDefault(initialLocale);
+    }
+
+    disableUpdateChecksOnEveryPlugin();
+  }
+
+  /**
+   * @param useFbContrib true if the fb-contrib detectors must be executed
+   * @param useFindSecBugs true if the find-sec-bugs detectors must be executed
+   * @return The loaded plugins whose detectors must be disabled
+   */
+  public synchronized Collection<Plugin> getExcludedPlugins(boolean useFbContrib, boolean useFindSecBugs) {
+    Set<Plugin> excludedPlugins = new HashSet<>();
+    if (!useFbContrib) {
+      addLoadedPlugin(excludedPlugins, FB_CONTRIB_PLUGIN_ID);
+    }
+    if (!useFindSecBugs) {
+      addLoadedPlugin(excludedPlugins, FIND_SEC_BUGS_PLUGIN_ID);
+    }
+    return excludedPlugins;
+  }
+
+  /**
+   * @return The jars of the loaded plugins whose detectors must be executed
+   */
+  public synchronized List<File> getPluginJars(boolean useFbContrib, boolean useFindSecBugs) {
+    Collection<Plugin> excludedPlugins = getExcludedPlugins(useFbContrib, useFindSecBugs);
+    List<File> pluginJars = new ArrayList<>();
+    for (Plugin plugin : customPlugins) {
+      if (!excludedPlugins.contains(plugin)) {
+        try {
+          pluginJars.add(new File(plugin.getPluginLoader().getURI()));
+        } catch (IllegalArgumentException e) {
+          LOG.debug("Plugin not loaded from a jar file: {}", plugin.getPluginId());
+        }
+      }
+    }
+    return pluginJars;
+  }
+
+  private void addLoadedPlugin(Set<Plugin> plugins, String pluginId) {
+    for (Plugin plugin : customPlugins) {
+      if (pluginId.equals(plugin.getPluginId())) {
+        plugins.add(plugin);
+      }
+    }
+  }
+
+  private void loadPlugin(File pluginJar, ClassLoader classLoader) {
+    try {
+      Plugin plugin = Plugin.addCustomPlugin(pluginJar.toURI(), classLoader);
+      if (plugin != null) {
+        customPlugins.add(plugin);
+        LOG.info("Loading findbugs plugin: " + pluginJar.getPath());
+      }
+    } catch (PluginException e) {
+      LOG.warn("Failed to load plugin for custom detector: " + pluginJar.getPath());
+      LOG.debug("Cause of failure", e);
+    } catch (DuplicatePluginIdException e) {
+      // FB Core plugin is always loaded, so we'll get an exception for it always
+      if (!FINDBUGS_CORE_PLUGIN_ID.equals(e.getPluginId())) {
+        // log only if it's not the FV Core plugin
+        LOG.debug("Plugin already loaded: exception ignored: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  private static String normalizeUrl(URL url) throws URISyntaxException {
+    return Strings.CS.removeStart(StringUtils.substringBefore(url.toURI().getSchemeSpecificPart(), "!"), "file:");
+  }
+
+  /**
+   * Disable the update check for every plugin. See http://findbugs.sourceforge.net/updateChecking.html
+   */
+  private static void disableUpdateChecksOnEveryPlugin() {
+    for (Plugin plugin : Plugin.getAllPlugins()) {
+      plugin.setMyGlobalOption("noUpdateChecks", "true");
+    }
+  }
+
+  @Override
+  public void start() {
+    // do nothing
+  }
+
+  /**
+   * Invoked by the container at the end of the analysis to unload the plugins
+   */
+  @Override
+  public synchronized void stop() {
+    for (Plugin plugin : customPlugins) {
+      Plugin.removeCustomPlugin(plugin);
+
+      try {
+        // Close the classloaders pointing to the extracted jars so we do not prevent the deletion of the temporary folder
+        plugin.close();
+      } catch (IOException e) {
+        LOG.error("Error closing plugin", e);
+      }
+    }
+    customPlugins.clear();
+    loaded = false;
+  }
+}
@@ -22,11 +22,18 @@ package org.sonar.plugins.findbugs;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +65,8 @@ public class FindbugsSensor implements Sensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(FindbugsSensor.class);
 
+  private static final int MAPPING_QUEUE_CAPACITY_PER_THREAD = 1000;
+
   public static final String[] REPOS = {FindbugsRulesDefinition.REPOSITORY_KEY, FbContribRulesDefinition.REPOSITORY_KEY,
           FindSecurityBugsRulesDefinition.REPOSITORY_KEY, FindSecurityBugsJspRulesDefinition.REPOSITORY_KEY,
           FindSecurityBugsScalaRulesDefinition.REPOSITORY_KEY
@@ -66,7 +75,10 @@ public class FindbugsSensor implements Sensor {
   private List<String> repositories = new ArrayList<String>();
 
   private ActiveRules activeRules;
+  private ActiveRuleLookup activeRuleLookup;
+  private volatile ClassFileIndex classFileIndex;
   private FindbugsExecutor executor;
+  private final FindbugsConfiguration configuration;
   private final ClasspathLocator classpathLocator;
   private final ByteCodeResourceLocator byteCodeResourceLocator;
   private final FileSystem fs;
@@ -75,10 +87,12 @@ public class FindbugsSensor implements Sensor {
   protected PrintWriter classMappingWriter;
 
   public FindbugsSensor(ActiveRules activeRules, SensorContext sensorContext,
-                        FindbugsExecutor executor, ClasspathLocator classpathLocator, FileSystem fs, ByteCodeResourceLocator byteCodeResourceLocator) {
+                        FindbugsExecutor executor, FindbugsConfiguration configuration, ClasspathLocator classpathLocator, FileSystem fs,
+                        ByteCodeResourceLocator byteCodeResourceLocator) {
     this.activeRules = activeRules;
     this.sensorContext = sensorContext;
     this.executor = executor;
+    this.configuration = configuration;
     this.classpathLocator = classpathLocator;
     this.byteCodeResourceLocator = byteCodeResourceLocator;
     this.fs = fs;
@@ -129,106 +143,31 @@ public class FindbugsSensor implements Sensor {
       return;
     }
 
-    AnalysisResult analysisResult = executor.execute(hasActiveFbContribRules(), hasActiveFindSecBugsRules());
-
-    try {
-
-      for (ReportedBug bugInstance : analysisResult.getReportedBugs()) {
+    activeRuleLookup = new ActiveRuleLookup(activeRules, getRepositories());
 
-        try {
-          ActiveRule rule = null;
-          for (String repoKey : getRepositories()) {
-            rule = activeRules.findByInternalKey(repoKey, bugInstance.getType());
-            if (rule != null) {
-              break;
-            }
-          }
-          if (rule == null) {
-            // ignore violations from report, if rule not activated in Sonar
-            LOG.warn("Findbugs rule '{}' is not active in Sonar.", bugInstance.getType());
-            continue;
-          }
+    int mappingThreads = configuration.getIssueMappingThreads();
 
-          String className = bugInstance.getClassName();
-          String sourceFile = bugInstance.getSourceFile();
-          String longMessage = bugInstance.getMessage();
-          int line = bugInstance.getStartLine();
-          
-          // Example values for an inner class
-          // className:                   multimodule.core.InnerClassSample$InnerClass
-          // bugInstance.getClassFile():  multimodule.core.InnerClassSample
-          // sourceFile:                  multimodule/core/InnerClassSample.java
-
-          // Example values for a Kotlin extension class (classFile and sourceFile are missing Kt at the end
-          // className:                   org.jitsi.rtp.extensions.bytearray.ByteArrayExtensionsKt
-          // bugInstance.getClassFile():  org.jitsi.rtp.extensions.bytearray.ByteArrayExtensions
-          // sourceFile:                  org/jitsi/rtp/extensions/bytearray/ByteArrayExtensions.kt
-          
-          //Locate the original class file
-          File classFile = findOriginalClassForBug(bugInstance);
-
-  //        //If the class was an outer class, the source file will not be analog to the class name.
-  //        //The original source file is available in the class file metadata.
-  //        resource = byteCodeResourceLocator.findJavaOuterClassFile(className, classFile, this.fs);
-  //        if (resource != null) {
-  //          insertIssue(rule, resource, line, longMessage);
-  //          continue;
-  //        }
-
-          //More advanced mapping if the original source is not Java files
-          // Even though we might be able to find the source file right away there might be an SMAP we need to look for:
-          // For Kotlin classes part of the .class file might be from other sources files
-          if (classFile != null) {
-            //Attempt to load SMAP debug metadata
-            try {
-              SmapParser.SmapLocation location = byteCodeResourceLocator.extractSmapLocation(className, line, classFile);
-              if (location != null) {
-                if (!location.isPrimaryFile) { //Avoid reporting issue in double when a source file was include inline
-                  continue;
-                }
-
-                //SMAP was found
-                InputFile resource = byteCodeResourceLocator.findSourceFile(location.fileInfo.path, fs);
-                if (resource != null) {
-                  insertIssue(rule, resource, location.line, longMessage, bugInstance);
-                  continue;
-                }
-              } else {
-                //SMAP was not found or unparsable.. The orgininal source file will be guess based on the class name
-                InputFile resource = byteCodeResourceLocator.findTemplateFile(className, this.fs);
-                if (resource != null) {
-                  insertIssue(rule, resource, line, longMessage, bugInstance);
-                  continue;
-                }
-              }
-            } catch (ClassMetadataLoadingException e) {
-              LOG.warn("Failed to load the class file metadata", e);
-            }
-          }
-          
-          // In case there was no .class file or we could not use the SMAP
-          //Regular Java class mapped to their original .java
-          InputFile resource = byteCodeResourceLocator.findSourceFile(sourceFile, this.fs);
-          if (resource != null) {
-            insertIssue(rule, resource, line, longMessage, bugInstance);
-            continue;
+    try {
+      Collection<AnalysisError> analysisErrors;
+      if (mappingThreads > 0) {
+        analysisErrors = executePipelined(mappingThreads);
+      } else {
+        AnalysisResult analysisResult = executor.execute(hasActiveFbContribRules(), hasActiveFindSecBugsRules());
+
+        for (ReportedBug bugInstance : analysisResult.getReportedBugs()) {
+          MappedBug mappedBug = mapBug(bugInstance);
+          if (mappedBug != null) {
+            saveIssue(mappedBug);
           }
-
-          // We have found an issue in a class file but the corresponding source file was not found, this might be because:
-          // - it's a Kotlin extension from another project/module
-          // - the source file was excluded and is not visible in the FileSystem interface
-          // - we're analyzing all the class files on the classpath and some are from another Gradle module, but the source file is not in the FileSystem
-          LOG.debug("The class '{}' could not be matched to its original source file. It might be a dynamically generated class. Class file: {}", className, classFile);
-        } catch (Exception e) {
-          String bugInstanceDebug = String.format("[BugInstance type=%s, class=%s, line=%s]", bugInstance.getType(), bugInstance.getClassName(), bugInstance.getStartLine());
-          LOG.warn("An error occurs while processing the bug instance " + bugInstanceDebug, e);
-          //Continue to the bug without aborting the report
         }
+        analysisErrors = analysisResult.getAnalysisErrors();
       }
 
-      for (AnalysisError analysisError : analysisResult.getAnalysisErrors()) {
+      for (AnalysisError analysisError : analysisErrors) {
         insertAnalysisError(context, analysisError);
       }
+      activeRuleLookup.logInactiveRuleHits();
+      LOG.debug("SMAP cache: {}", byteCodeResourceLocator.getSmapCacheStatistics());
     }
     finally {
       if(classMappingWriter != null) {
@@ -238,6 +177,155 @@ public class FindbugsSensor implements Sensor {
     }
   }
 
+  /**
+   * Map the bugs to their source files on several threads while the SpotBugs engine is running.
+   * The issues are saved by a single thread.
+   * The queues are bounded: the engine waits when the mapping threads do not keep up.
+   */
+  private Collection<AnalysisError> executePipelined(int mappingThreads) {
+    ExecutorService mappingService = newBoundedExecutor(mappingThreads);
+    ExecutorService writerService = newBoundedExecutor(1);
+    try {
+      Collection<AnalysisError> analysisErrors = executor.execute(hasActiveFbContribRules(), hasActiveFindSecBugsRules(),
+        bugInstance -> mappingService.execute(() -> {
+          MappedBug mappedBug = mapBug(bugInstance);
+          if (mappedBug != null) {
+            writerService.execute(() -> saveIssue(mappedBug));
+          }
+        }));
+
+      // The mapping tasks submit the issues to the writer, it must be stopped last
+      awaitTermination(mappingService);
+      awaitTermination(writerService);
+
+      return analysisErrors;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while mapping the Findbugs issues", e);
+    } finally {
+      mappingService.shutdownNow();
+      writerService.shutdownNow();
+    }
+  }
+
+  private static ExecutorService newBoundedExecutor(int threads) {
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * MAPPING_QUEUE_CAPACITY_PER_THREAD),
+      (task, executorService) -> {
+        try {
+          // Block the submitting thread until there is some room in the queue
+          executorService.getQueue().put(task);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RejectedExecutionException(e);
+        }
+      });
+  }
+
+  private static void awaitTermination(ExecutorService executorService) throws InterruptedException {
+    executorService.shutdown();
+    while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+      LOG.debug("Waiting for the Findbugs issues to be mapped");
+    }
+  }
+
+  /**
+   * @return The issue to save for this bug, null if the rule is not active or if the bug can not be mapped to a source file
+   */
+  private MappedBug mapBug(ReportedBug bugInstance) {
+    try {
+      ActiveRule rule = activeRuleLookup.find(bugInstance.getType());
+      if (rule == null) {
+        // ignore violations from report, if rule not activated in Sonar, they are logged at the end of the analysis
+        return null;
+      }
+
+      String className = bugInstance.getClassName();
+      String sourceFile = bugInstance.getSourceFile();
+      String longMessage = bugInstance.getMessage();
+      int line = bugInstance.getStartLine();
+      
+      // Example values for an inner class
+      // className:                   multimodule.core.InnerClassSample$InnerClass
+      // bugInstance.getClassFile():  multimodule.core.InnerClassSample
+      // sourceFile:                  multimodule/core/InnerClassSample.java
+
+      // Example values for a Kotlin extension class (classFile and sourceFile are missing Kt at the end
+      // className:                   org.jitsi.rtp.extensions.bytearray.ByteArrayExtensionsKt
+      // bugInstance.getClassFile():  org.jitsi.rtp.extensions.bytearray.ByteArrayExtensions
+      // sourceFile:                  org/jitsi/rtp/extensions/bytearray/ByteArrayExtensions.kt
+      
+      //Locate the original class file
+      File classFile = findOriginalClassForBug(bugInstance);
+
+//        //If the class was an outer class, the source file will not be analog to the class name.
+//        //The original source file is available in the class file metadata.
+//        resource = byteCodeResourceLocator.findJavaOuterClassFile(className, classFile, this.fs);
+//        if (resource != null) {
+//          insertIssue(rule, resource, line, longMessage);
+//          continue;
+//        }
+
+      //More advanced mapping if the original source is not Java files
+      // Even though we might be able to find the source file right away there might be an SMAP we need to look for:
+      // For Kotlin classes part of the .class file might be from other sources files
+      if (classFile != null) {
+        //Attempt to load SMAP debug metadata
+        try {
+          SmapParser.SmapLocation location = byteCodeResourceLocator.extractSmapLocation(className, line, classFile);
+          if (location != null) {
+            if (!location.isPrimaryFile) { //Avoid reporting issue in double when a source file was include inline
+              return null;
+            }
+
+            //SMAP was found
+            InputFile resource = byteCodeResourceLocator.findSourceFile(location.fileInfo.path, fs);
+            if (resource != null) {
+              return new MappedBug(rule, resource, location.line, longMessage, bugInstance);
+            }
+          } else {
+            //SMAP was not found or unparsable.. The orgininal source file will be guess based on the class name
+            InputFile resource = byteCodeResourceLocator.findTemplateFile(className, this.fs);
+            if (resource != null) {
+              return new MappedBug(rule, resource, line, longMessage, bugInstance);
+            }
+          }
+        } catch (ClassMetadataLoadingException e) {
+          LOG.warn("Failed to load the class file metadata", e);
+        }
+      }
+      
+      // In case there was no .class file or we could not use the SMAP
+      //Regular Java class mapped to their original .java
+      InputFile resource = byteCodeResourceLocator.findSourceFile(sourceFile, this.fs);
+      if (resource != null) {
+        return new MappedBug(rule, resource, line, longMessage, bugInstance);
+      }
+
+      // We have found an issue in a class file but the corresponding source file was not found, this might be because:
+      // - it's a Kotlin extension from another project/module
+      // - the source file was excluded and is not visible in the FileSystem interface
+      // - we're analyzing all the class files on the classpath and some are from another Gradle module, but the source file is not in the FileSystem
+      LOG.debug("The class '{}' could not be matched to its original source file. It might be a dynamically generated class. Class file: {}", className, classFile);
+    } catch (Exception e) {
+      logProcessingError(bugInstance, e);
+      //Continue to the bug without aborting the report
+    }
+    return null;
+  }
+
+  private void saveIssue(MappedBug mappedBug) {
+    try {
+      insertIssue(mappedBug.rule, mappedBug.resource, mappedBug.line, mappedBug.message, mappedBug.bugInstance);
+    } catch (Exception e) {
+      logProcessingError(mappedBug.bugInstance, e);
+    }
+  }
+
+  private static void logProcessingError(ReportedBug bugInstance, Exception e) {
+    String bugInstanceDebug = String.format("[BugInstance type=%s, class=%s, line=%s]", bugInstance.getType(), bugInstance.getClassName(), bugInstance.getStartLine());
+    LOG.warn("An error occurs while processing the bug instance " + bugInstanceDebug, e);
+  }
+
   public void insertAnalysisError(SensorContext context, AnalysisError analysisError) {
     NewAnalysisError error = context.newAnalysisError();
 
@@ -292,16 +380,54 @@ public class FindbugsSensor implements Sensor {
    * @return File handle of the original class file analyzed
    */
   private File findOriginalClassForBug(ReportedBug bugInstance) {
-    String sourceFile = byteCodeResourceLocator.findClassFileByClassName(bugInstance.getClassName(), classpathLocator);
-    if (sourceFile == null) {
-      sourceFile = byteCodeResourceLocator.findClassFileByClassName(bugInstance.getClassFile(), classpathLocator);
+    ClassFileIndex index = getClassFileIndex();
+    File classFile = index.find(bugInstance.getClassName());
+    if (classFile == null) {
+      classFile = index.find(bugInstance.getClassFile());
     }
-    
-    if (sourceFile == null) {
-      return null;
+    return classFile;
+  }
+
+  /**
+   * The classpath directories are only listed when the first bug is mapped, the index is then shared by the mapping threads
+   */
+  private ClassFileIndex getClassFileIndex() {
+    ClassFileIndex index = classFileIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = classFileIndex;
+        if (index == null) {
+          try {
+            index = ClassFileIndex.build(classpathLocator.classpath());
+            LOG.debug("{} class files found in the classpath directories", index.size());
+          } catch (IOException e) {
+            LOG.warn("Unable to list the class files of the classpath, the issues will be mapped from the source file names", e);
+            index = ClassFileIndex.empty();
+          }
+          classFileIndex = index;
+        }
+      }
     }
+    return index;
+  }
 
-    return new File(sourceFile);
+  /**
+   * A bug mapped to the location of the issue in the source files
+   */
+  private static class MappedBug {
+    private final ActiveRule rule;
+    private final InputFile resource;
+    private final int line;
+    private final String message;
+    private final ReportedBug bugInstance;
+
+    MappedBug(ActiveRule rule, InputFile resource, int line, String message, ReportedBug bugInstance) {
+      this.rule = rule;
+      this.resource = resource;
+      this.line = line;
+      this.message = message;
+      this.bugInstance = bugInstance;
+    }
   }
 
   @Override
@@ -21,8 +21,13 @@ package org.sonar.plugins.findbugs;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import javax.annotation.CheckForNull;
 import javax.xml.stream.XMLInputFactory;
@@ -34,6 +39,11 @@ import org.sonar.java.annotations.VisibleForTesting;
 
 class FindbugsXmlReportParser {
 
+  /**
+   * The annotations whose source line is used when the bug has no source line of its own, in the order used by SpotBugs
+   */
+  private static final List<String> MEMBER_ELEMENTS = Arrays.asList("Method", "Field", "Class");
+
   private final File findbugsXmlReport;
   private final String findbugsXmlReportPath;
 
@@ -47,46 +57,110 @@ class FindbugsXmlReportParser {
 
   public List<XmlBugInstance> getBugInstances() {
     List<XmlBugInstance> result = new ArrayList<>();
+    readReport(type -> true, result::add, error -> {});
+    return result;
+  }
+
+  /**
+   * @return The time at which SpotBugs analyzed the project, null if it is not recorded in the report
+   */
+  @CheckForNull
+  public Long readAnalysisTimestamp() {
+    try {
+      SMInputFactory inf = new SMInputFactory(XMLInputFactory.newInstance());
+      SMInputCursor cursor = inf.rootElementCursor(findbugsXmlReport).advance();
+      String analysisTimestamp = cursor.getAttrValue("analysisTimestamp");
+      cursor.getStreamReader().closeCompletely();
+      return analysisTimestamp == null ? null : Long.valueOf(analysisTimestamp);
+    } catch (XMLStreamException | NumberFormatException e) {
+      throw new IllegalStateException("Unable to parse the Findbugs XML Report '" + findbugsXmlReportPath + "'", e);
+    }
+  }
+
+  /**
+   * Read the report element by element, the whole report is never loaded in memory.
+   * The bug instances whose type is rejected by the filter are skipped without reading their content.
+   */
+  public void readReport(Predicate<String> typeFilter, Consumer<XmlBugInstance> bugConsumer, Consumer<String> errorConsumer) {
     try {
       SMInputFactory inf = new SMInputFactory(XMLInputFactory.newInstance());
       SMInputCursor cursor = inf.rootElementCursor(findbugsXmlReport).advance();
-      SMInputCursor bugInstanceCursor = cursor.childElementCursor("BugInstance").advance();
-      while (bugInstanceCursor.asEvent() != null) {
-        XmlBugInstance xmlBugInstance = new XmlBugInstance();
-        xmlBugInstance.type = bugInstanceCursor.getAttrValue("type");
-        xmlBugInstance.longMessage = "";
-        result.add(xmlBugInstance);
-
-        List<XmlSourceLineAnnotation> lines = new ArrayList<>();
-        SMInputCursor bugInstanceChildCursor = bugInstanceCursor.childElementCursor().advance();
-        while (bugInstanceChildCursor.asEvent() != null) {
-          String nodeName = bugInstanceChildCursor.getLocalName();
-          if ("LongMessage".equals(nodeName)) {
-            xmlBugInstance.longMessage = bugInstanceChildCursor.collectDescendantText();
-          } else if ("SourceLine".equals(nodeName)) {
-            XmlSourceLineAnnotation xmlSourceLineAnnotation = new XmlSourceLineAnnotation();
-            xmlSourceLineAnnotation.parseStart(bugInstanceChildCursor.getAttrValue("start"));
-            xmlSourceLineAnnotation.parseEnd(bugInstanceChildCursor.getAttrValue("end"));
-            xmlSourceLineAnnotation.parsePrimary(bugInstanceChildCursor.getAttrValue("primary"));
-            xmlSourceLineAnnotation.className = bugInstanceChildCursor.getAttrValue("classname");
-            lines.add(xmlSourceLineAnnotation);
+      SMInputCursor childCursor = cursor.childElementCursor().advance();
+      while (childCursor.asEvent() != null) {
+        String nodeName = childCursor.getLocalName();
+        if ("BugInstance".equals(nodeName)) {
+          String type = childCursor.getAttrValue("type");
+          if (typeFilter.test(type)) {
+            bugConsumer.accept(readBugInstance(type, childCursor));
           }
-          bugInstanceChildCursor.advance();
+        } else if ("Errors".equals(nodeName)) {
+          readErrors(childCursor, errorConsumer);
         }
-        xmlBugInstance.sourceLines = Collections.unmodifiableList(lines);
-        bugInstanceCursor.advance();
+        childCursor.advance();
       }
       cursor.getStreamReader().closeCompletely();
     } catch (XMLStreamException e) {
       throw new IllegalStateException("Unable to parse the Findbugs XML Report '" + findbugsXmlReportPath + "'", e);
     }
-    return result;
+  }
+
+  private static XmlBugInstance readBugInstance(String type, SMInputCursor bugInstanceCursor) throws XMLStreamException {
+    XmlBugInstance xmlBugInstance = new XmlBugInstance();
+    xmlBugInstance.type = type;
+    xmlBugInstance.longMessage = "";
+
+    List<XmlSourceLineAnnotation> lines = new ArrayList<>();
+    Map<String, XmlSourceLineAnnotation> memberSourceLines = new HashMap<>();
+    SMInputCursor bugInstanceChildCursor = bugInstanceCursor.childElementCursor().advance();
+    while (bugInstanceChildCursor.asEvent() != null) {
+      String nodeName = bugInstanceChildCursor.getLocalName();
+      if ("LongMessage".equals(nodeName)) {
+        xmlBugInstance.longMessage = bugInstanceChildCursor.collectDescendantText();
+      } else if ("SourceLine".equals(nodeName)) {
+        lines.add(readSourceLine(bugInstanceChildCursor));
+      } else if (MEMBER_ELEMENTS.contains(nodeName)) {
+        // The primary annotation of each kind, or the first one
+        boolean primary = Boolean.parseBoolean(bugInstanceChildCursor.getAttrValue("primary"));
+        if (primary || !memberSourceLines.containsKey(nodeName)) {
+          SMInputCursor sourceLineCursor = bugInstanceChildCursor.childElementCursor("SourceLine").advance();
+          if (sourceLineCursor.asEvent() != null) {
+            memberSourceLines.put(nodeName, readSourceLine(sourceLineCursor));
+          }
+        }
+      }
+      bugInstanceChildCursor.advance();
+    }
+    xmlBugInstance.sourceLines = Collections.unmodifiableList(lines);
+    xmlBugInstance.memberSourceLines = memberSourceLines;
+    return xmlBugInstance;
+  }
+
+  private static XmlSourceLineAnnotation readSourceLine(SMInputCursor sourceLineCursor) throws XMLStreamException {
+    XmlSourceLineAnnotation xmlSourceLineAnnotation = new XmlSourceLineAnnotation();
+    xmlSourceLineAnnotation.parseStart(sourceLineCursor.getAttrValue("start"));
+    xmlSourceLineAnnotation.parseEnd(sourceLineCursor.getAttrValue("end"));
+    xmlSourceLineAnnotation.parsePrimary(sourceLineCursor.getAttrValue("primary"));
+    xmlSourceLineAnnotation.className = sourceLineCursor.getAttrValue("classname");
+    xmlSourceLineAnnotation.sourcePath = sourceLineCursor.getAttrValue("sourcepath");
+    return xmlSourceLineAnnotation;
+  }
+
+  private static void readErrors(SMInputCursor errorsCursor, Consumer<String> errorConsumer) throws XMLStreamException {
+    SMInputCursor analysisErrorCursor = errorsCursor.childElementCursor("AnalysisError").advance();
+    while (analysisErrorCursor.asEvent() != null) {
+      SMInputCursor errorMessageCursor = analysisErrorCursor.childElementCursor("ErrorMessage").advance();
+      if (errorMessageCursor.asEvent() != null) {
+        errorConsumer.accept(errorMessageCursor.collectDescendantText());
+      }
+      analysisErrorCursor.advance();
+    }
   }
 
   public static class XmlBugInstance {
     private String type;
     private String longMessage;
     private List<XmlSourceLineAnnotation> sourceLines;
+    private Map<String, XmlSourceLineAnnotation> memberSourceLines;
 
     public String getType() {
       return type;
@@ -104,8 +178,17 @@ class FindbugsXmlReportParser {
           return sourceLine;
         }
       }
-      // As a last resort - return first line
-      return sourceLines.isEmpty() ? null : sourceLines.get(0);
+      if (!sourceLines.isEmpty()) {
+        return sourceLines.get(0);
+      }
+      // The report was written without the messages, the bug only has the source lines of its method, field or class
+      for (String memberElement : MEMBER_ELEMENTS) {
+        XmlSourceLineAnnotation memberSourceLine = memberSourceLines.get(memberElement);
+        if (memberSourceLine != null) {
+          return memberSourceLine;
+        }
+      }
+      return null;
     }
 
   }
@@ -116,6 +199,7 @@ class FindbugsXmlReportParser {
     private Integer end;
     @VisibleForTesting
     protected String className;
+    private String sourcePath;
 
     public void parseStart(String attrValue) {
       try {
@@ -153,6 +237,11 @@ class FindbugsXmlReportParser {
       return className;
     }
 
+    @CheckForNull
+    public String getSourcePath() {
+      return sourcePath;
+    }
+
     public String getSonarJavaFileKey() {
       if (className.indexOf('$') > -1) {
         return className.substring(0, className.indexOf('$'));
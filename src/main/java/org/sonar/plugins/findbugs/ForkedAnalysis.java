@@ -0,0 +1,225 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.dom4j.DocumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * Execute SpotBugs in a separate JVM so the memory used by the analysis is not taken from the scanner heap.
+ *
+ * The worker JVM runs the SpotBugs command line with the same project, filters and plugins as the in-process analysis.
+ * The bugs are read back from the XML report written by the worker.
+ */
+final class ForkedAnalysis {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ForkedAnalysis.class);
+
+  private final File workDir;
+  private final List<String> jvmArgs;
+  private final Collection<File> pluginJars;
+  private final String effort;
+  private final int priorityThreshold;
+
+  ForkedAnalysis(File workDir, List<String> jvmArgs, Collection<File> pluginJars, String effort, int priorityThreshold) {
+    this.workDir = workDir;
+    this.jvmArgs = jvmArgs;
+    this.pluginJars = pluginJars;
+    this.effort = effort;
+    this.priorityThreshold = priorityThreshold;
+  }
+
+  /**
+   * @param timeout Maximum duration of the analysis in milliseconds, the worker is killed when it is exceeded
+   */
+  SortedBugCollection execute(Project project, IncludeFilter includeFilter, List<File> excludeFilters, Collection<DetectorFactory> disabledDetectors, long timeout)
+    throws IOException, InterruptedException, TimeoutException {
+    FileUtils.forceMkdir(workDir);
+    File projectFile = File.createTempFile("spotbugs-project", ".xml", workDir);
+    File reportFile = File.createTempFile("spotbugs-result", ".xml", workDir);
+    File logFile = File.createTempFile("spotbugs-worker", ".log", workDir);
+    File userPreferencesFile = File.createTempFile("spotbugs-preferences", ".properties", workDir);
+    File includeFilterFile = File.createTempFile("spotbugs-include", ".xml", workDir);
+
+    Process process = null;
+    try {
+      project.writeXML(projectFile, null);
+      writeUserPreferences(userPreferencesFile, disabledDetectors);
+      includeFilter.writeTo(includeFilterFile);
+
+      List<String> command = buildCommand(projectFile, reportFile, userPreferencesFile, includeFilterFile, excludeFilters);
+      LOG.debug("Starting SpotBugs worker: {}", command);
+      process = new ProcessBuilder(command)
+        .directory(workDir)
+        .redirectErrorStream(true)
+        .redirectOutput(logFile)
+        .start();
+
+      if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+        throw new TimeoutException("SpotBugs worker did not complete within " + timeout + " milliseconds");
+      }
+      if (process.exitValue() != 0) {
+        throw new IllegalStateException("SpotBugs worker failed with exit code " + process.exitValue() + ", see the logs in " + logFile.getAbsolutePath());
+      }
+
+      SortedBugCollection bugCollection = new SortedBugCollection(project);
+      bugCollection.readXML(reportFile);
+      bugCollection.setWithMessages(true);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("SpotBugs worker output:\n{}", FileUtils.readFileToString(logFile, StandardCharsets.UTF_8));
+      }
+      Files.deleteIfExists(logFile.toPath());
+      return bugCollection;
+    } catch (DocumentException e) {
+      throw new IOException("Can not read the report of the SpotBugs worker: " + reportFile.getAbsolutePath(), e);
+    } finally {
+      if (process != null && process.isAlive()) {
+        process.destroyForcibly();
+      }
+      Files.deleteIfExists(projectFile.toPath());
+      Files.deleteIfExists(reportFile.toPath());
+      Files.deleteIfExists(userPreferencesFile.toPath());
+      Files.deleteIfExists(includeFilterFile.toPath());
+    }
+  }
+
+  /**
+   * The disabled detectors are given to the worker in the user preferences: the detectors named with -omitVisitors must
+   * be known when the command line is parsed, before the plugins are loaded
+   */
+  private void writeUserPreferences(File userPreferencesFile, Collection<DetectorFactory> disabledDetectors) throws IOException {
+    UserPreferences userPreferences = UserPreferences.createDefaultUserPreferences();
+    userPreferences.setEffort(effort);
+    for (DetectorFactory factory : disabledDetectors) {
+      userPreferences.enableDetector(factory, false);
+    }
+    try (OutputStream output = Files.newOutputStream(userPreferencesFile.toPath())) {
+      userPreferences.write(output);
+    }
+  }
+
+  private List<String> buildCommand(File projectFile, File reportFile, File userPreferencesFile, File includeFilter, List<File> excludeFilters)
+    throws IOException {
+    Set<String> classpath = buildWorkerClasspath();
+
+    List<String> command = new ArrayList<>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+    // The worker writes the messages of the report in English, like the engines running in the scanner JVM
+    command.add("-Duser.language=en");
+    command.add("-Duser.country=US");
+    command.addAll(jvmArgs);
+    command.add("-cp");
+    command.add(String.join(File.pathSeparator, classpath));
+    command.add(FindBugs2.class.getName());
+
+    command.add("-userPrefs");
+    command.add(userPreferencesFile.getAbsolutePath());
+    command.add("-project");
+    command.add(projectFile.getAbsolutePath());
+    command.add("-xml:withMessages");
+    command.add("-output");
+    command.add(reportFile.getAbsolutePath());
+    command.add("-effort:" + effort);
+    command.add(priorityThresholdOption(priorityThreshold));
+    command.add("-noClassOk");
+    command.add("-include");
+    command.add(includeFilter.getAbsolutePath());
+    for (File excludeFilter : excludeFilters) {
+      command.add("-exclude");
+      command.add(excludeFilter.getAbsolutePath());
+    }
+
+    // Plugins which are already on the classpath of the worker are loaded automatically
+    List<String> customPluginJars = new ArrayList<>();
+    for (File pluginJar : pluginJars) {
+      if (!classpath.contains(pluginJar.getCanonicalPath())) {
+        customPluginJars.add(pluginJar.getAbsolutePath());
+      }
+    }
+    if (!customPluginJars.isEmpty()) {
+      command.add("-pluginList");
+      command.add(String.join(File.pathSeparator, customPluginJars));
+    }
+
+    return command;
+  }
+
+  /**
+   * The worker uses the same SpotBugs libraries as the scanner: the jars of the SonarQube plugin classloader,
+   * or the JVM classpath when SpotBugs is not loaded by a dedicated classloader (unit tests).
+   */
+  private static Set<String> buildWorkerClasspath() throws IOException {
+    Set<String> classpath = new LinkedHashSet<>();
+    ClassLoader classLoader = FindBugs2.class.getClassLoader();
+    if (classLoader instanceof URLClassLoader) {
+      for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+        try {
+          classpath.add(new File(url.toURI()).getCanonicalPath());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+          LOG.debug("Classpath entry ignored by the SpotBugs worker: {}", url);
+        }
+      }
+    } else {
+      for (String entry : StringUtils.split(System.getProperty("java.class.path"), File.pathSeparator)) {
+        classpath.add(new File(entry).getCanonicalPath());
+      }
+    }
+    return classpath;
+  }
+
+  static String priorityThresholdOption(int priorityThreshold) {
+    switch (priorityThreshold) {
+      case Priorities.HIGH_PRIORITY:
+        return "-high";
+      case Priorities.LOW_PRIORITY:
+        return "-low";
+      case Priorities.EXP_PRIORITY:
+        return "-experimental";
+      default:
+        return "-medium";
+    }
+  }
+}
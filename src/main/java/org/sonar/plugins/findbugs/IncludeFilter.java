@@ -0,0 +1,107 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.filter.Matcher;
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLAttributeList;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * Include filter matching the bugs whose type is the internal key of an active rule.
+ *
+ * The filter is given to the SpotBugs engine as is, a bug is matched with a single lookup in the set of the bug types
+ * instead of going through one {@link edu.umd.cs.findbugs.filter.BugMatcher} per active rule. It is only written as a
+ * FindBugsFilter XML file for the analyses executed in a separate JVM.
+ */
+public final class IncludeFilter implements Matcher {
+
+  private final Set<String> bugTypes;
+  private final String fingerprint;
+
+  public IncludeFilter(Collection<String> bugTypes) {
+    this(bugTypes, computeFingerprint(bugTypes));
+  }
+
+  IncludeFilter(Collection<String> bugTypes, String fingerprint) {
+    this.bugTypes = Collections.unmodifiableSet(new TreeSet<>(bugTypes));
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * @return The sorted bug types
+   */
+  public Set<String> getBugTypes() {
+    return bugTypes;
+  }
+
+  /**
+   * @return The SHA-256 of the bug types, identical for all the sets containing the same bug types
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public boolean match(BugInstance bugInstance) {
+    return bugTypes.contains(bugInstance.getType());
+  }
+
+  @Override
+  public void writeXML(XMLOutput xmlOutput, boolean disabled) throws IOException {
+    for (String bugType : bugTypes) {
+      xmlOutput.openTag("Match");
+      xmlOutput.openCloseTag("Bug", new XMLAttributeList().addAttribute("pattern", bugType));
+      xmlOutput.closeTag("Match");
+    }
+  }
+
+  /**
+   * Write the filter in the FindBugsFilter format read by the -include option of SpotBugs
+   */
+  public void writeTo(File file) throws IOException {
+    try (OutputStream output = Files.newOutputStream(file.toPath())) {
+      XMLOutput xmlOutput = new OutputStreamXMLOutput(output);
+      xmlOutput.beginDocument();
+      xmlOutput.openTag("FindBugsFilter");
+      writeXML(xmlOutput, false);
+      xmlOutput.closeTag("FindBugsFilter");
+      xmlOutput.finish();
+    }
+  }
+
+  /**
+   * @return The SHA-256 of the sorted bug types
+   */
+  static String computeFingerprint(Collection<String> bugTypes) {
+    return Sha256.hash(String.join("\n", new TreeSet<>(bugTypes)));
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.plugins.findbugs.rules.FbContribRulesDefinition;
+import org.sonar.plugins.findbugs.rules.FindSecurityBugsRulesDefinition;
+import org.sonar.plugins.findbugs.rules.FindbugsRulesDefinition;
+
+/**
+ * The include filters built from the active rules, shared by the (sub)projects of the scanner execution.
+ *
+ * The filters are identified by the fingerprint of the sorted bug types of the active rules: the (sub)projects with the
+ * same active rules share the same filter, even when SonarQube gives them different instances of the active rules.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class IncludeFilterCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IncludeFilterCache.class);
+
+  private final Map<String, IncludeFilter> filtersByFingerprint = new HashMap<>();
+
+  /**
+   * @return The filter matching the bugs of the active fb-contrib, find-sec-bugs and SpotBugs rules
+   */
+  public IncludeFilter getIncludeFilter(ActiveRules activeRules) {
+    Set<String> bugTypes = getActiveBugTypes(activeRules);
+    String fingerprint = IncludeFilter.computeFingerprint(bugTypes);
+    synchronized (this) {
+      return filtersByFingerprint.computeIfAbsent(fingerprint, k -> {
+        LOG.debug("Include filter built for {} active rule(s)", bugTypes.size());
+        return new IncludeFilter(bugTypes, fingerprint);
+      });
+    }
+  }
+
+  private static Set<String> getActiveBugTypes(ActiveRules activeRules) {
+    Set<String> bugTypes = new TreeSet<>();
+    for (ActiveRule activeRule : activeRules.findAll()) {
+      String repoKey = activeRule.ruleKey().repository();
+      String internalKey = activeRule.internalKey();
+      if (internalKey != null && (repoKey.contains(FindSecurityBugsRulesDefinition.REPOSITORY_KEY)
+        || repoKey.contains(FindbugsRulesDefinition.REPOSITORY_KEY) || repoKey.contains(FbContribRulesDefinition.REPOSITORY_KEY))) {
+        bugTypes.add(internalKey);
+      }
+    }
+    return bugTypes;
+  }
+}
@@ -0,0 +1,398 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.CheckForNull;
+
+import org.objectweb.asm.ClassReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+import org.sonar.plugins.findbugs.resource.ClassReferenceExtractor;
+
+import edu.umd.cs.findbugs.Project;
+
+/**
+ * Restrict the analysis to the classes that changed since the previous analysis.
+ *
+ * The SonarQube analysis cache stores, for every analyzed class, the hash of its class file, the classes it references
+ * and the bugs that were reported for it. Only the classes whose content changed and the classes depending on a changed
+ * (or removed) class are analyzed again, the bugs of the other classes are replayed from the cache. The stored references
+ * form the dependency graph of the module: the dependents are the classes referencing a changed class, directly or
+ * through other dependents up to the configured depth, so the interprocedural detectors see the callers of the changed code.
+ * The cached entries are discarded when the analysis settings (plugin version, rules, filters, classpath, etc.) change.
+ */
+class IncrementalAnalysis {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IncrementalAnalysis.class);
+
+  static final String CACHE_KEY_PREFIX = "findbugs:incremental:";
+  private static final int FORMAT_VERSION = 2;
+
+  private final String cacheKey;
+  private final String fingerprint;
+  private final int dependentsDepth;
+  private final ClassReferenceExtractor referenceExtractor = new ClassReferenceExtractor();
+
+  private Map<String, ClassEntry> previousEntries = Collections.emptyMap();
+  private final Map<String, ClassEntry> currentEntries = new HashMap<>();
+  private final Set<String> analyzedClasses = new HashSet<>();
+  /**
+   * False when a bug could not be attached to any class, the entries must not be reused or the bug would be lost
+   */
+  private boolean cacheable = true;
+
+  /**
+   * @param dependentsDepth Number of levels of dependents of the changed classes analyzed again, all the dependents when negative
+   */
+  IncrementalAnalysis(String cacheKey, String fingerprint, int dependentsDepth) {
+    this.cacheKey = cacheKey;
+    this.fingerprint = fingerprint;
+    this.dependentsDepth = dependentsDepth < 0 ? Integer.MAX_VALUE : dependentsDepth;
+  }
+
+  /**
+   * Load the entries saved by the previous analysis, they are ignored if the analysis settings have changed since then
+   *
+   * @param previousCache The cache of the previous analysis
+   */
+  void loadPreviousEntries(ReadCache previousCache) {
+    if (!previousCache.contains(cacheKey)) {
+      LOG.info("No previous SpotBugs analysis found in the cache, all the classes will be analyzed");
+      return;
+    }
+
+    try (InputStream input = previousCache.read(cacheKey)) {
+      Map<String, ClassEntry> entries = read(input, fingerprint);
+      if (entries == null) {
+        LOG.info("The SpotBugs analysis settings have changed since the previous analysis, all the classes will be analyzed");
+      } else {
+        previousEntries = entries;
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to read the previous SpotBugs analysis from the cache, all the classes will be analyzed");
+      LOG.debug("Cause of failure", e);
+    }
+  }
+
+  /**
+   * Remove from the project the class files that do not need to be analyzed again.
+   * The directories containing the classes are added to the auxiliary classpath so the removed classes can still be resolved.
+   *
+   * @param project The project initialized with all the class files
+   * @return The number of class files left to analyze
+   */
+  int selectClassesToAnalyze(Project project) throws IOException {
+    Set<String> changedClasses = new HashSet<>();
+    Set<String> filesToAnalyze = new HashSet<>();
+    Map<String, String> fileByClass = new HashMap<>();
+    Set<String> classpathRoots = new LinkedHashSet<>();
+
+    for (String file : project.getFileList()) {
+      byte[] bytes = Files.readAllBytes(Paths.get(file));
+      String hash = Sha256.hash(bytes);
+
+      ClassReader classReader;
+      try {
+        classReader = new ClassReader(bytes);
+      } catch (RuntimeException e) {
+        // Not a valid class file, let SpotBugs report the problem
+        LOG.debug("Unable to read the class file {}", file, e);
+        filesToAnalyze.add(file);
+        continue;
+      }
+
+      String internalName = classReader.getClassName();
+      String className = internalName.replace('/', '.');
+      addClasspathRoot(classpathRoots, file, internalName);
+      fileByClass.put(className, file);
+
+      ClassEntry previousEntry = previousEntries.get(className);
+      if (previousEntry != null && previousEntry.hash.equals(hash)) {
+        currentEntries.put(className, previousEntry);
+      } else {
+        currentEntries.put(className, new ClassEntry(hash, referenceExtractor.getReferencedClasses(classReader), new ArrayList<>()));
+        changedClasses.add(className);
+      }
+    }
+
+    Set<String> modifiedClasses = new HashSet<>(changedClasses);
+    for (String previousClass : previousEntries.keySet()) {
+      if (!currentEntries.containsKey(previousClass)) {
+        modifiedClasses.add(previousClass);
+      }
+    }
+
+    analyzedClasses.addAll(changedClasses);
+    analyzedClasses.addAll(findDependents(modifiedClasses));
+
+    for (String analyzedClass : analyzedClasses) {
+      filesToAnalyze.add(fileByClass.get(analyzedClass));
+    }
+
+    for (int i = project.getFileCount() - 1; i >= 0; i--) {
+      if (!filesToAnalyze.contains(project.getFile(i))) {
+        project.removeFile(i);
+      }
+    }
+
+    for (String classpathRoot : classpathRoots) {
+      project.addAuxClasspathEntry(classpathRoot);
+    }
+
+    LOG.info("Incremental SpotBugs analysis: {} changed class(es), {} class(es) to analyze, {} class(es) reused from the previous analysis",
+        changedClasses.size(), project.getFileCount(), currentEntries.size() - analyzedClasses.size());
+
+    return project.getFileCount();
+  }
+
+  /**
+   * Attach the bugs reported by the current analysis to their class and add the bugs of the classes that were not analyzed again
+   *
+   * @param reportedBugs The bugs reported by SpotBugs for the analyzed classes
+   * @return The bugs for all the classes of the project
+   */
+  Collection<ReportedBug> mergeWithCachedBugs(Collection<ReportedBug> reportedBugs) {
+    List<ReportedBug> bugs = new ArrayList<>(reportedBugs);
+
+    for (String analyzedClass : analyzedClasses) {
+      currentEntries.computeIfPresent(analyzedClass, (className, entry) -> new ClassEntry(entry.hash, entry.references, new ArrayList<>()));
+    }
+
+    for (ReportedBug reportedBug : reportedBugs) {
+      String owner = findOwner(reportedBug);
+      if (owner == null) {
+        LOG.info("The bug {} reported in {} does not belong to any analyzed class, the next SpotBugs analysis will analyze all the classes",
+          reportedBug.getType(), reportedBug.getClassName());
+        cacheable = false;
+      } else if (analyzedClasses.contains(owner)) {
+        currentEntries.get(owner).bugs.add(reportedBug);
+      } else {
+        // The bug was found while analyzing another class, the hash is dropped so the owner is analyzed again by the next analysis
+        LOG.debug("The bug {} reported in {} cannot be cached", reportedBug.getType(), reportedBug.getClassName());
+        currentEntries.computeIfPresent(owner, (className, entry) -> new ClassEntry("", entry.references, entry.bugs));
+      }
+    }
+
+    for (Map.Entry<String, ClassEntry> entry : currentEntries.entrySet()) {
+      if (!analyzedClasses.contains(entry.getKey())) {
+        bugs.addAll(entry.getValue().bugs);
+      }
+    }
+
+    return bugs;
+  }
+
+  /**
+   * Save the entries of the current analysis for the next one
+   *
+   * @param nextCache The cache that will be available to the next analysis
+   */
+  void save(WriteCache nextCache) {
+    if (!cacheable) {
+      return;
+    }
+    try {
+      nextCache.write(cacheKey, write(currentEntries, fingerprint));
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to save the SpotBugs analysis in the cache");
+      LOG.debug("Cause of failure", e);
+    }
+  }
+
+  Set<String> getAnalyzedClasses() {
+    return analyzedClasses;
+  }
+
+  /**
+   * @return The class of the project the bug belongs to: its class, one of its outer classes, or the class compiled from
+   * the same source file. Null if there is none.
+   */
+  @CheckForNull
+  private String findOwner(ReportedBug reportedBug) {
+    String className = reportedBug.getClassName();
+    while (!currentEntries.containsKey(className) && className.lastIndexOf('$') > 0) {
+      className = className.substring(0, className.lastIndexOf('$'));
+    }
+    if (currentEntries.containsKey(className)) {
+      return className;
+    }
+    return currentEntries.containsKey(reportedBug.getClassFile()) ? reportedBug.getClassFile() : null;
+  }
+
+  /**
+   * Walk the reverse dependency graph from the modified classes, one level of dependents per iteration
+   *
+   * @return The current classes depending on the modified classes, up to the configured depth
+   */
+  private Set<String> findDependents(Set<String> modifiedClasses) {
+    Set<String> dependents = new HashSet<>();
+    if (dependentsDepth == 0 || modifiedClasses.isEmpty()) {
+      return dependents;
+    }
+
+    Map<String, List<String>> dependentsByClass = new HashMap<>();
+    for (Map.Entry<String, ClassEntry> entry : currentEntries.entrySet()) {
+      for (String reference : entry.getValue().references) {
+        dependentsByClass.computeIfAbsent(reference, k -> new ArrayList<>()).add(entry.getKey());
+      }
+    }
+
+    Set<String> visited = new HashSet<>(modifiedClasses);
+    Collection<String> level = modifiedClasses;
+    for (int depth = 0; depth < dependentsDepth && !level.isEmpty(); depth++) {
+      List<String> nextLevel = new ArrayList<>();
+      for (String className : level) {
+        for (String dependent : dependentsByClass.getOrDefault(className, Collections.emptyList())) {
+          if (visited.add(dependent)) {
+            dependents.add(dependent);
+            nextLevel.add(dependent);
+          }
+        }
+      }
+      level = nextLevel;
+    }
+
+    return dependents;
+  }
+
+  static void addClasspathRoot(Set<String> classpathRoots, String file, String internalName) {
+    String classFileSuffix = internalName + ".class";
+    String normalizedFile = file.replace('\\', '/');
+    if (normalizedFile.endsWith(classFileSuffix)) {
+      classpathRoots.add(file.substring(0, file.length() - classFileSuffix.length()));
+    }
+  }
+
+  static byte[] write(Map<String, ClassEntry> entries, String fingerprint) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(new GZIPOutputStream(bytes))) {
+      output.writeInt(FORMAT_VERSION);
+      writeString(output, fingerprint);
+      output.writeInt(entries.size());
+
+      for (Map.Entry<String, ClassEntry> entry : entries.entrySet()) {
+        ClassEntry classEntry = entry.getValue();
+        writeString(output, entry.getKey());
+        writeString(output, classEntry.hash);
+
+        output.writeInt(classEntry.references.size());
+        for (String reference : classEntry.references) {
+          writeString(output, reference);
+        }
+
+        output.writeInt(classEntry.bugs.size());
+        for (ReportedBug bug : classEntry.bugs) {
+          writeString(output, bug.getType());
+          writeString(output, bug.getMessage());
+          writeString(output, bug.getClassName());
+          output.writeInt(bug.getStartLine());
+          writeString(output, bug.getSourceFile());
+          writeString(output, bug.getClassFile());
+        }
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return The entries, or null if they were saved with different analysis settings
+   */
+  static Map<String, ClassEntry> read(InputStream inputStream, String fingerprint) throws IOException {
+    try (DataInputStream input = new DataInputStream(new GZIPInputStream(inputStream))) {
+      if (input.readInt() != FORMAT_VERSION || !fingerprint.equals(readString(input))) {
+        return null;
+      }
+
+      int entryCount = input.readInt();
+      Map<String, ClassEntry> entries = new HashMap<>(entryCount * 2);
+      for (int i = 0; i < entryCount; i++) {
+        String className = readString(input);
+        String hash = readString(input);
+
+        int referenceCount = input.readInt();
+        Set<String> references = new TreeSet<>();
+        for (int j = 0; j < referenceCount; j++) {
+          references.add(readString(input));
+        }
+
+        int bugCount = input.readInt();
+        List<ReportedBug> bugs = new ArrayList<>(bugCount);
+        for (int j = 0; j < bugCount; j++) {
+          bugs.add(new ReportedBug(readString(input), readString(input), readString(input), input.readInt(), readString(input), readString(input)));
+        }
+
+        entries.put(className, new ClassEntry(hash, references, bugs));
+      }
+      return entries;
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    // DataOutputStream.writeUTF() is limited to 64KB, messages could be longer
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static class ClassEntry {
+    private final String hash;
+    private final Set<String> references;
+    private final List<ReportedBug> bugs;
+
+    ClassEntry(String hash, Set<String> references, List<ReportedBug> bugs) {
+      this.hash = hash;
+      this.references = references;
+      this.bugs = bugs;
+    }
+
+    List<ReportedBug> getBugs() {
+      return bugs;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * Filter of the classes to analyze, built from the value of the sonar.findbugs.onlyAnalyze {@link FindbugsConstants} property.
+ *
+ * The syntax is the one of the SpotBugs -onlyAnalyze option: a comma-separated list of classes, of packages ending with
+ * .* and of package prefixes ending with .- (to also match the subpackages). An item starting with ! excludes the classes
+ * it matches. The items are compiled once into a tree of package names, a class is matched by walking its package name
+ * instead of running the regular expressions of {@link edu.umd.cs.findbugs.ClassScreener} on the path of its file.
+ */
+final class OnlyAnalyzeFilter {
+
+  private final PackageNode inclusions = new PackageNode();
+  private final PackageNode exclusions = new PackageNode();
+  private boolean hasInclusions;
+
+  private OnlyAnalyzeFilter() {
+  }
+
+  static OnlyAnalyzeFilter parse(String onlyAnalyze) {
+    OnlyAnalyzeFilter filter = new OnlyAnalyzeFilter();
+    StringTokenizer tok = new StringTokenizer(onlyAnalyze, ",");
+    while (tok.hasMoreTokens()) {
+      filter.addItem(tok.nextToken().trim());
+    }
+    return filter;
+  }
+
+  private void addItem(String item) {
+    PackageNode root = inclusions;
+    String pattern = item;
+    if (pattern.startsWith("!")) {
+      root = exclusions;
+      pattern = pattern.substring(1);
+    } else {
+      hasInclusions = true;
+    }
+
+    if (pattern.endsWith(".-")) {
+      root.getOrCreate(pattern.substring(0, pattern.length() - 2)).subPackages = true;
+    } else if (pattern.endsWith(".*")) {
+      root.getOrCreate(pattern.substring(0, pattern.length() - 2)).allClasses = true;
+    } else {
+      int lastDot = pattern.lastIndexOf('.');
+      PackageNode node = lastDot < 0 ? root : root.getOrCreate(pattern.substring(0, lastDot));
+      node.classes.add(pattern.substring(lastDot + 1));
+    }
+  }
+
+  /**
+   * @param className The binary name of a class, for instance com.example.Outer$Inner
+   * @return true if the class must be analyzed
+   */
+  boolean matches(String className) {
+    if (exclusions.matches(className)) {
+      return false;
+    }
+    return !hasInclusions || inclusions.matches(className);
+  }
+
+  private static class PackageNode {
+    private final Map<String, PackageNode> subPackageNodes = new HashMap<>();
+    private final Set<String> classes = new HashSet<>();
+    private boolean allClasses;
+    private boolean subPackages;
+
+    PackageNode getOrCreate(String packageName) {
+      PackageNode node = this;
+      if (!packageName.isEmpty()) {
+        for (String segment : packageName.split("\\.")) {
+          node = node.subPackageNodes.computeIfAbsent(segment, k -> new PackageNode());
+        }
+      }
+      return node;
+    }
+
+    boolean matches(String className) {
+      PackageNode node = this;
+      int start = 0;
+      while (!node.subPackages) {
+        int dot = className.indexOf('.', start);
+        if (dot < 0) {
+          return node.allClasses || node.classes.contains(className.substring(start));
+        }
+        node = node.subPackageNodes.get(className.substring(start, dot));
+        if (node == null) {
+          return false;
+        }
+        start = dot + 1;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.findbugs.resource.SmapParser;
+
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.classfile.engine.asm.FindBugsASM;
+
+/**
+ * Restrict the analysis to the classes compiled from the source files changed by a pull request.
+ *
+ * A class is compiled from a changed file when its <code>SourceFile</code> attribute, resolved in the directory of its
+ * package, or one of the files listed in its SMAP (JSP, inlined Kotlin functions) matches the path of a changed file.
+ * The classes whose source file is unknown are always analyzed.
+ */
+class PullRequestAnalysis {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PullRequestAnalysis.class);
+
+  /**
+   * Changed files (normalized with '/' separators) indexed by file name
+   */
+  private final Map<String, List<String>> changedFilesByName = new HashMap<>();
+
+  PullRequestAnalysis(Collection<String> changedFiles) {
+    for (String changedFile : changedFiles) {
+      String normalizedFile = changedFile.replace('\\', '/');
+      changedFilesByName.computeIfAbsent(fileName(normalizedFile), k -> new ArrayList<>()).add(normalizedFile);
+    }
+  }
+
+  /**
+   * Remove from the project the class files which were not compiled from a changed source file.
+   * The directories containing the classes are added to the auxiliary classpath so the removed classes can still be resolved.
+   *
+   * @param project The project initialized with all the class files
+   * @return The number of class files left to analyze
+   */
+  int selectClassesToAnalyze(Project project) throws IOException {
+    List<String> allFiles = new ArrayList<>(project.getFileList());
+    Set<String> filesToAnalyze = new HashSet<>();
+    Set<String> classpathRoots = new LinkedHashSet<>();
+
+    for (String file : allFiles) {
+      if (!file.endsWith(".class")) {
+        // Archives and directories are always analyzed
+        filesToAnalyze.add(file);
+        continue;
+      }
+
+      SourceVisitor visitor = new SourceVisitor();
+      try {
+        new ClassReader(Files.readAllBytes(Paths.get(file))).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+      } catch (RuntimeException e) {
+        // Not a valid class file, let SpotBugs report the problem
+        LOG.debug("Unable to read the class file {}", file, e);
+        filesToAnalyze.add(file);
+        continue;
+      }
+
+      IncrementalAnalysis.addClasspathRoot(classpathRoots, file, visitor.internalName);
+      Set<String> sourcePaths = getSourcePaths(file, visitor);
+      if (sourcePaths.isEmpty()) {
+        // Compiled without debug information (-g:none), the class may come from a changed file
+        LOG.debug("The source file of the class file {} is unknown, it is analyzed", file);
+        filesToAnalyze.add(file);
+      } else if (isChanged(sourcePaths)) {
+        filesToAnalyze.add(file);
+      }
+    }
+
+    for (int i = project.getFileCount() - 1; i >= 0; i--) {
+      if (!filesToAnalyze.contains(project.getFile(i))) {
+        project.removeFile(i);
+      }
+    }
+
+    for (String classpathRoot : classpathRoots) {
+      project.addAuxClasspathEntry(classpathRoot);
+    }
+
+    LOG.info("Pull request analysis: {} class file(s) compiled from the {} changed file(s) are analyzed, {} class file(s) are skipped",
+      project.getFileCount(), changedFilesByName.values().stream().mapToInt(List::size).sum(), allFiles.size() - project.getFileCount());
+
+    return project.getFileCount();
+  }
+
+  /**
+   * @return The paths of the source files of the class, relative to a source root when the package is known
+   */
+  private static Set<String> getSourcePaths(String file, SourceVisitor visitor) {
+    Set<String> sourcePaths = new LinkedHashSet<>();
+
+    if (visitor.source != null) {
+      int packageEnd = visitor.internalName.lastIndexOf('/');
+      sourcePaths.add(packageEnd < 0 ? visitor.source : visitor.internalName.substring(0, packageEnd + 1) + visitor.source);
+    }
+
+    String smap = visitor.debug;
+    if (smap == null) {
+      Path smapFile = Paths.get(file + ".smap");
+      if (Files.isRegularFile(smapFile)) {
+        try {
+          smap = new String(Files.readAllBytes(smapFile), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+          LOG.debug("Unable to read the SMAP file {}", smapFile, e);
+        }
+      }
+    }
+    if (smap != null) {
+      try {
+        for (SmapParser.FileInfo fileInfo : new SmapParser(smap).getFileInfos()) {
+          sourcePaths.add(fileInfo.path);
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.debug("Unable to parse the SMAP of the class file {}", file, e);
+      }
+    }
+
+    return sourcePaths;
+  }
+
+  private boolean isChanged(Set<String> sourcePaths) {
+    for (String sourcePath : sourcePaths) {
+      String normalizedPath = sourcePath.replace('\\', '/');
+      while (normalizedPath.startsWith("/")) {
+        normalizedPath = normalizedPath.substring(1);
+      }
+      if (normalizedPath.isEmpty()) {
+        continue;
+      }
+
+      List<String> candidates = changedFilesByName.getOrDefault(fileName(normalizedPath), Collections.emptyList());
+      for (String candidate : candidates) {
+        // The Kotlin files do not have to be stored in the directory of their package
+        if (candidate.equals(normalizedPath) || candidate.endsWith("/" + normalizedPath) || normalizedPath.endsWith(".kt")) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String fileName(String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  private static class SourceVisitor extends ClassVisitor {
+    private String internalName;
+    @Nullable
+    private String source;
+    @Nullable
+    private String debug;
+
+    SourceVisitor() {
+      super(FindBugsASM.ASM_VERSION);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+      this.internalName = name;
+    }
+
+    @Override
+    public void visitSource(String source, String debug) {
+      this.source = source;
+      this.debug = debug;
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.sonar.plugins.findbugs;
 
 import edu.umd.cs.findbugs.BugInstance;
 
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,13 +42,20 @@ public class ReportedBug {
     this.className = bugInstance.getPrimarySourceLineAnnotation().getClassName();
     this.startLine = bugInstance.getPrimarySourceLineAnnotation().getStartLine();
     this.sourceFile = bugInstance.getPrimarySourceLineAnnotation().getSourcePath();
-    Matcher m = SOURCE_FILE_PATTERN.matcher(sourceFile);
-    if (m.find()) {
-      this.classFile = m.group(1).replace("/",".");
-    }
-    else {
-      this.classFile = className;
-    }
+    this.classFile = toClassFile(sourceFile, className);
+  }
+
+  public ReportedBug(String type, String message, String className, int startLine, String sourceFile) {
+    this(type, message, className, startLine, sourceFile, toClassFile(sourceFile, className));
+  }
+
+  public ReportedBug(String type, String message, String className, int startLine, String sourceFile, String classFile) {
+    this.type = type;
+    this.message = message;
+    this.className = className;
+    this.startLine = startLine;
+    this.sourceFile = sourceFile;
+    this.classFile = classFile;
   }
 
   public String getType() {
@@ -70,6 +78,36 @@ public class ReportedBug {
 
   public String getClassFile() { return classFile; }
 
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ReportedBug other = (ReportedBug) o;
+    return startLine == other.startLine
+      && Objects.equals(type, other.type)
+      && Objects.equals(message, other.message)
+      && Objects.equals(className, other.className)
+      && Objects.equals(sourceFile, other.sourceFile)
+      && Objects.equals(classFile, other.classFile);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, message, className, startLine, sourceFile, classFile);
+  }
+
+  private static String toClassFile(String sourceFile, String className) {
+    Matcher m = SOURCE_FILE_PATTERN.matcher(sourceFile);
+    if (m.find()) {
+      return m.group(1).replace("/",".");
+    }
+    return className;
+  }
+
   private static Pattern createSourceFilePattern() {
     StringBuffer extensions = new StringBuffer();
 
@@ -0,0 +1,206 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.objectweb.asm.ClassReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.Project;
+
+/**
+ * Existing SpotBugs reports reused instead of analyzing the project again, a build may generate one report per task.
+ *
+ * SpotBugs does not record the hash of the analyzed classes in its report: the class files modified after the analysis
+ * timestamp of the oldest report are considered changed. Only these classes are analyzed again, the bugs of the other
+ * classes are read from the reports.
+ */
+class ReusedReport {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReusedReport.class);
+
+  private static final String GLOB_CHARACTERS = "*?[{";
+
+  private final List<File> reports;
+  private final long analysisTimestamp;
+  private final Set<String> changedClasses = new HashSet<>();
+  private final Set<String> reanalyzedBugs = new HashSet<>();
+
+  ReusedReport(List<File> reports) {
+    this.reports = reports;
+    long oldestTimestamp = Long.MAX_VALUE;
+    for (File report : reports) {
+      Long recordedTimestamp = new FindbugsXmlReportParser(report).readAnalysisTimestamp();
+      // Reports written by other tools may not record the analysis time, the report is at least as old as its file
+      oldestTimestamp = Math.min(oldestTimestamp, recordedTimestamp == null ? report.lastModified() : recordedTimestamp);
+    }
+    this.analysisTimestamp = oldestTimestamp;
+  }
+
+  List<File> getReports() {
+    return reports;
+  }
+
+  /**
+   * @param baseDir The directory the report paths are relative to
+   * @param reportPaths Paths of reports, or glob patterns such as <code>build/reports/spotbugs/*.xml</code>
+   * @return The non empty reports matching the paths
+   */
+  static List<File> findReports(File baseDir, Collection<String> reportPaths) throws IOException {
+    Set<Path> reports = new LinkedHashSet<>();
+    for (String reportPath : reportPaths) {
+      if (StringUtils.containsAny(reportPath, GLOB_CHARACTERS)) {
+        reports.addAll(findMatchingFiles(baseDir.toPath(), reportPath));
+      } else {
+        Path report = new File(baseDir, reportPath).toPath().normalize();
+        if (isReport(report)) {
+          reports.add(report);
+        }
+      }
+    }
+
+    List<File> reportFiles = new ArrayList<>();
+    for (Path report : reports) {
+      reportFiles.add(report.toFile());
+    }
+    return reportFiles;
+  }
+
+  private static List<Path> findMatchingFiles(Path baseDir, String pattern) throws IOException {
+    // Only the directory before the first segment with a wildcard is walked
+    String[] segments = StringUtils.split(pattern.replace('\\', '/'), '/');
+    Path walkedDir = baseDir;
+    int firstGlobSegment = 0;
+    while (firstGlobSegment < segments.length - 1 && !StringUtils.containsAny(segments[firstGlobSegment], GLOB_CHARACTERS)) {
+      walkedDir = walkedDir.resolve(segments[firstGlobSegment]);
+      firstGlobSegment++;
+    }
+    if (!Files.isDirectory(walkedDir)) {
+      return new ArrayList<>();
+    }
+
+    String relativePattern = StringUtils.join(segments, '/', firstGlobSegment, segments.length);
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+    Path root = walkedDir.normalize();
+    try (Stream<Path> stream = Files.walk(root)) {
+      return stream.filter(path -> matcher.matches(root.relativize(path)) && isReport(path))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+  }
+
+  private static boolean isReport(Path path) {
+    // File.length() is unspecified for directories
+    File file = path.toFile();
+    return file.isFile() && file.length() > 0;
+  }
+
+  /**
+   * Remove from the project the class files that did not change since the report was generated.
+   * The directories containing the classes are added to the auxiliary classpath so the removed classes can still be resolved.
+   *
+   * @param project The project initialized with all the class files
+   * @return False if the changed classes cannot be determined, the project is left unchanged and the report must not be reused
+   */
+  boolean selectChangedClasses(Project project) throws IOException {
+    for (String file : project.getFileList()) {
+      Path path = Paths.get(file);
+      if (!Files.isDirectory(path) && !ClassFileScanner.isClassFile(path) && isModified(path)) {
+        LOG.info("The archive {} was modified after the SpotBugs reports were generated, the reports are not reused", file);
+        return false;
+      }
+    }
+
+    List<String> changedFiles = new ArrayList<>();
+    Set<String> classpathRoots = new LinkedHashSet<>();
+    for (Path classFile : ClassFileScanner.listClassFiles(project)) {
+      String internalName;
+      try {
+        internalName = new ClassReader(Files.readAllBytes(classFile)).getClassName();
+      } catch (RuntimeException e) {
+        // Not a valid class file, let SpotBugs report the problem
+        LOG.debug("Unable to read the class file {}", classFile, e);
+        changedFiles.add(classFile.toString());
+        continue;
+      }
+
+      IncrementalAnalysis.addClasspathRoot(classpathRoots, classFile.toString(), internalName);
+      if (isModified(classFile)) {
+        changedFiles.add(classFile.toString());
+        changedClasses.add(internalName.replace('/', '.'));
+      }
+    }
+
+    for (int i = project.getFileCount() - 1; i >= 0; i--) {
+      project.removeFile(i);
+    }
+    for (String changedFile : changedFiles) {
+      project.addFile(changedFile);
+    }
+    for (String classpathRoot : classpathRoots) {
+      project.addAuxClasspathEntry(classpathRoot);
+    }
+
+    return true;
+  }
+
+  /**
+   * Record the bugs found by the analysis of the changed classes.
+   * They may be reported on a class which did not change (e.g. the outer class of a changed anonymous class) and with
+   * a different primary class than in the report, they are identified by their type, source class and line.
+   */
+  void setReanalyzedBugs(Collection<ReportedBug> reportedBugs) {
+    for (ReportedBug reportedBug : reportedBugs) {
+      reanalyzedBugs.add(bugKey(reportedBug));
+    }
+  }
+
+  /**
+   * @return True if the bug was reported for a class which did not change since the report was generated and was not found again
+   */
+  boolean isUpToDate(ReportedBug reportedBug) {
+    return !changedClasses.contains(reportedBug.getClassName()) && !reanalyzedBugs.contains(bugKey(reportedBug));
+  }
+
+  private static String bugKey(ReportedBug reportedBug) {
+    return reportedBug.getType() + '|' + reportedBug.getClassFile() + '|' + reportedBug.getStartLine();
+  }
+
+  private boolean isModified(Path path) throws IOException {
+    return Files.getLastModifiedTime(path).toMillis() > analysisTimestamp;
+  }
+}
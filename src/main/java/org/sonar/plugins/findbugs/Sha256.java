@@ -0,0 +1,81 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of files and contents, formatted as lowercase hexadecimal strings
+ */
+final class Sha256 {
+
+  private Sha256() {
+  }
+
+  static String hash(File file) throws IOException {
+    try (InputStream input = Files.newInputStream(file.toPath())) {
+      return hash(input);
+    }
+  }
+
+  static String hash(String content) {
+    return hash(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static String hash(byte[] content) {
+    return toHex(newDigest().digest(content));
+  }
+
+  /**
+   * @return The SHA-256 of the content of the stream, which is read until its end but not closed
+   */
+  static String hash(InputStream stream) throws IOException {
+    DigestInputStream input = new DigestInputStream(new BufferedInputStream(stream), newDigest());
+    byte[] buffer = new byte[8192];
+    while (input.read(buffer) != -1) {
+      // The digest is updated while reading
+    }
+    return toHex(input.getMessageDigest().digest());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(byte[] digest) {
+    StringBuilder hash = new StringBuilder();
+    for (byte b : digest) {
+      hash.append(String.format("%02x", b));
+    }
+    return hash.toString();
+  }
+}
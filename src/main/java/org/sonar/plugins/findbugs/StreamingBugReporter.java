@@ -0,0 +1,167 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.AbstractBugReporter;
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugAnnotation;
+import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+
+/**
+ * {@link edu.umd.cs.findbugs.BugReporter} converting each bug to a {@link ReportedBug} as soon as it is reported.
+ *
+ * Unlike {@link edu.umd.cs.findbugs.XMLBugReporter}, the {@link BugInstance} are not kept until the end of the analysis,
+ * only the compact {@link ReportedBug} are handed to the consumer. The bugs reported twice are dropped with the identity
+ * used by {@link SortedBugCollection} (primary class, type, priority and annotations), so the same bugs are reported with
+ * or without the XML report.
+ */
+class StreamingBugReporter extends AbstractBugReporter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamingBugReporter.class);
+
+  private final Consumer<ReportedBug> consumer;
+  private final List<AnalysisError> analysisErrors = new ArrayList<>();
+  private final Set<String> missingClasses = new TreeSet<>();
+  // Only the annotations of the bugs are kept, not their properties and messages
+  private final Set<BugIdentity> reportedBugs = new TreeSet<>();
+
+  StreamingBugReporter(Consumer<ReportedBug> consumer) {
+    this.consumer = consumer;
+  }
+
+  @Override
+  protected void doReportBug(BugInstance bugInstance) {
+    if (bugInstance.getPrimarySourceLineAnnotation() == null) {
+      LOG.warn("No source line for " + bugInstance.getType());
+      return;
+    }
+    if (!reportedBugs.add(new BugIdentity(bugInstance))) {
+      return;
+    }
+
+    consumer.accept(new ReportedBug(bugInstance));
+  }
+
+  @Override
+  public void reportAnalysisError(AnalysisError error) {
+    analysisErrors.add(error);
+  }
+
+  @Override
+  public void reportMissingClass(String className) {
+    missingClasses.add(className);
+  }
+
+  @Override
+  public void observeClass(ClassDescriptor classDescriptor) {
+    // nothing to do
+  }
+
+  @Override
+  public void finish() {
+    // nothing to do
+  }
+
+  @Override
+  public void reportQueuedErrors() {
+    super.reportQueuedErrors();
+
+    if (!missingClasses.isEmpty()) {
+      LOG.debug("The following classes needed for analysis were missing: {}", missingClasses);
+    }
+  }
+
+  /**
+   * No bug collection is kept by this reporter
+   */
+  @Override
+  public BugCollection getBugCollection() {
+    return null;
+  }
+
+  public Collection<AnalysisError> getAnalysisErrors() {
+    return analysisErrors;
+  }
+
+  /**
+   * The fields compared by {@link SortedBugCollection.BugInstanceComparator}
+   */
+  private static final class BugIdentity implements Comparable<BugIdentity> {
+
+    private final String className;
+    private final String type;
+    private final int priority;
+    private final List<BugAnnotation> annotations;
+
+    BugIdentity(BugInstance bugInstance) {
+      this.className = bugInstance.getPrimaryClass().getClassName();
+      this.type = bugInstance.getType();
+      this.priority = bugInstance.getPriority();
+      this.annotations = new ArrayList<>(bugInstance.getAnnotations());
+    }
+
+    @Override
+    public int compareTo(BugIdentity other) {
+      int cmp = className.compareTo(other.className);
+      if (cmp != 0) {
+        return cmp;
+      }
+      cmp = type.compareTo(other.type);
+      if (cmp != 0) {
+        return cmp;
+      }
+      cmp = Integer.compare(priority, other.priority);
+      if (cmp != 0) {
+        return cmp;
+      }
+      for (int i = 0; i < Math.min(annotations.size(), other.annotations.size()); i++) {
+        cmp = annotations.get(i).compareTo(other.annotations.get(i));
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return Integer.compare(annotations.size(), other.annotations.size());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof BugIdentity && compareTo((BugIdentity) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(className, type, priority);
+    }
+  }
+}
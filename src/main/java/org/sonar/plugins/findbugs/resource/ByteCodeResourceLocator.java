@@ -25,8 +25,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
 
 import javax.annotation.Nullable;
 
@@ -36,7 +39,6 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
-import org.sonar.plugins.findbugs.classpath.ClasspathLocator;
 
 /**
  * Utility method related to mapped class name to various resources and extracting addition information.
@@ -47,6 +49,8 @@ public class ByteCodeResourceLocator {
 
     private static final Logger LOG = LoggerFactory.getLogger(ByteCodeResourceLocator.class);
 
+    private static final int SMAP_CACHE_SIZE = 1000;
+
     private static final String[] SOURCE_DIRECTORIES = {
         "src/main/java",
         "src/main/webapp",
@@ -58,27 +62,11 @@ public class ByteCodeResourceLocator {
         "src/test/java"
     };
 
-    /**
-     * findSourceFileKeyByClassName() is broken in SonarQube 6.3.1.. This method is fixing it.
-     * @param className The name of class to find the source file
-     * @param classpathLocator The {@link ClasspathLocator} to find resource by classname
-     * @return String filepath
-     */
-    public String findClassFileByClassName(String className, ClasspathLocator classpathLocator) {
-        String fileName = className.replace(".","/")+".class";
-
-        Collection<File> classPathEntries = classpathLocator.classpath();
-        for(File classPathEntry : classPathEntries) {
-            if(classPathEntry.isDirectory()) { //Skip jars in the classpath
+    // The source files of each (sub)project indexed by name, for the lookups by path suffix
+    private final Map<FileSystem, SourceFileIndex> sourceFileIndexes = Collections.synchronizedMap(new WeakHashMap<>());
 
-                File potentialLocation = new File(classPathEntry, fileName);
-                if(potentialLocation.exists()) {
-                    return potentialLocation.getPath();
-                }
-            }
-        }
-        return null;
-    }
+    // The parsed SMAP of the class files, a JSP or Kotlin class is usually reported with several bugs
+    private final SmapCache smapCache = new SmapCache(SMAP_CACHE_SIZE);
 
     /**
      * Find a Java source file based on the _exact_ filename passed.
@@ -148,12 +136,14 @@ public class ByteCodeResourceLocator {
             }
         }
         //Search for path _ending_ with the filename (https://github.com/SonarQubeCommunity/sonar-findbugs/issues/51)
-        for (InputFile f : fs.inputFiles(fs.predicates().hasType(InputFile.Type.MAIN))) {
-            if (f.relativePath().endsWith(fileName)) {
-                return f;
-            }
-        }
-        return null;
+        return getSourceFileIndex(fs).findByPathSuffix(fileName);
+    }
+
+    /**
+     * The index of the main source files is built the first time a file is searched in the file system
+     */
+    private SourceFileIndex getSourceFileIndex(FileSystem fs) {
+        return sourceFileIndexes.computeIfAbsent(fs, f -> new SourceFileIndex(f.inputFiles(f.predicates().hasType(InputFile.Type.MAIN))));
     }
 
     /**
@@ -168,12 +158,27 @@ public class ByteCodeResourceLocator {
      */
     @Nullable
     public SmapParser.SmapLocation extractSmapLocation(String className, int originalLine, File classFile) {
+        Optional<SmapParser> smap = smapCache.get(classFile, f -> loadSmap(className, f));
+        return smap.isPresent() ? smap.get().getSmapLocation(originalLine) : null;
+    }
+
+    /**
+     * @return The SMAP statistics of the cache (hits, misses)
+     */
+    public String getSmapCacheStatistics() {
+        return smapCache.toString();
+    }
+
+    /**
+     * Extract the SMAP of the class file, it is parsed once per class file (see {@link SmapCache})
+     */
+    private static Optional<SmapParser> loadSmap(String className, File classFile) {
         //Extract the SMAP (JSR45) from the class file (SourceDebugExtension section)
         try (InputStream in = new FileInputStream(classFile)) {
             DebugExtensionExtractor debug = new DebugExtensionExtractor();
             String smap = debug.getDebugExtFromClass(in);
             if(smap != null)
-                return getJspLineNumberFromSmap(smap, originalLine);
+                return Optional.of(new SmapParser(smap));
         } catch (IOException | ClassMetadataLoadingException e) {
             LOG.warn("An error occured while opening classfile : {}", classFile.getPath(), e);
         }
@@ -183,7 +188,7 @@ public class ByteCodeResourceLocator {
         File smapFile = new File(classFile.getPath()+".smap");
         if(smapFile.exists()) {
             try (InputStream smapInputStream = new FileInputStream(smapFile)) {
-                return getJspLineNumberFromSmap(IOUtils.toString(smapInputStream), originalLine);
+                return Optional.of(new SmapParser(IOUtils.toString(smapInputStream)));
             }
             catch (IOException e) {
                 LOG.debug("Unable to open smap file : {} ({})", smapFile.getAbsolutePath(), e.getMessage());
@@ -192,19 +197,7 @@ public class ByteCodeResourceLocator {
         else {
             LOG.debug("No smap mapping found.");
         }
-        return null; //No smap file is present.
-    }
-
-    /**
-     *
-     * @param smap SMAP content (See smap.txt sample in test directories)
-     * @param originalLine Java source code line number
-     * @return JSP line number
-     * @throws IOException
-     */
-    private SmapParser.SmapLocation getJspLineNumberFromSmap(String smap, Integer originalLine) throws IOException {
-        SmapParser parser = new SmapParser(smap);
-        return parser.getSmapLocation(originalLine);
+        return Optional.empty(); //No smap file is present.
     }
 
 }
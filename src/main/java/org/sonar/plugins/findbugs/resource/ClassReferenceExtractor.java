@@ -0,0 +1,203 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs.resource;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import edu.umd.cs.findbugs.classfile.engine.asm.FindBugsASM;
+
+/**
+ * Collect the names of the classes referenced by a class file.
+ *
+ * The references are read from the constant pool (class, name and type and method type entries) and from the
+ * declarations of the class (super class, interfaces, fields and methods signatures, generic signatures and
+ * annotations). The bodies of the methods are not visited, which keeps the extraction cheap compared to a full analysis.
+ */
+public class ClassReferenceExtractor {
+
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+
+    /**
+     * @param classReader The class to inspect
+     * @return The fully qualified names of the referenced classes (ie: <code>com.example.MyClass$Inner</code>), the class itself is excluded
+     */
+    public Set<String> getReferencedClasses(ClassReader classReader) {
+        Set<String> references = new TreeSet<>();
+        try {
+            char[] buffer = new char[classReader.getMaxStringLength()];
+
+            for (int i = 1; i < classReader.getItemCount(); i++) {
+                int offset = classReader.getItem(i);
+                // The second slot of long and double entries has no offset
+                if (offset == 0) {
+                    continue;
+                }
+
+                switch (classReader.readByte(offset - 1)) {
+                case CONSTANT_CLASS:
+                    addInternalName(references, classReader.readUTF8(offset, buffer));
+                    break;
+                case CONSTANT_NAME_AND_TYPE:
+                    addDescriptor(references, classReader.readUTF8(offset + 2, buffer));
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                    addDescriptor(references, classReader.readUTF8(offset, buffer));
+                    break;
+                default:
+                    break;
+                }
+            }
+
+            classReader.accept(new DeclarationsVisitor(references), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+        catch (Exception e) {
+            throw new ClassMetadataLoadingException(e);
+        }
+
+        references.remove(toClassName(classReader.getClassName()));
+        return references;
+    }
+
+    private static void addInternalName(Set<String> references, String internalName) {
+        if (internalName == null) {
+            return;
+        }
+        if (internalName.startsWith("[")) {
+            addType(references, Type.getType(internalName));
+        }
+        else {
+            references.add(toClassName(internalName));
+        }
+    }
+
+    private static void addDescriptor(Set<String> references, String descriptor) {
+        if (descriptor == null || descriptor.isEmpty()) {
+            return;
+        }
+        if (descriptor.charAt(0) == '(') {
+            Type methodType = Type.getMethodType(descriptor);
+            addType(references, methodType.getReturnType());
+            for (Type argumentType : methodType.getArgumentTypes()) {
+                addType(references, argumentType);
+            }
+        }
+        else {
+            addType(references, Type.getType(descriptor));
+        }
+    }
+
+    private static void addType(Set<String> references, Type type) {
+        Type elementType = type.getSort() == Type.ARRAY ? type.getElementType() : type;
+        if (elementType.getSort() == Type.OBJECT) {
+            references.add(toClassName(elementType.getInternalName()));
+        }
+    }
+
+    private static void addSignature(Set<String> references, String signature) {
+        if (signature == null) {
+            return;
+        }
+        new SignatureReader(signature).accept(new SignatureVisitor(FindBugsASM.ASM_VERSION) {
+            @Override
+            public void visitClassType(String name) {
+                addInternalName(references, name);
+            }
+        });
+    }
+
+    private static String toClassName(String internalName) {
+        return internalName.replace('/', '.');
+    }
+
+    private static class DeclarationsVisitor extends ClassVisitor {
+        private final Set<String> references;
+
+        public DeclarationsVisitor(Set<String> references) {
+            super(FindBugsASM.ASM_VERSION);
+            this.references = references;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            addInternalName(references, superName);
+            if (interfaces != null) {
+                for (String interfaceName : interfaces) {
+                    addInternalName(references, interfaceName);
+                }
+            }
+            addSignature(references, signature);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            addDescriptor(references, descriptor);
+            return null;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            addDescriptor(references, descriptor);
+            addSignature(references, signature);
+            return new FieldVisitor(FindBugsASM.ASM_VERSION) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                    addDescriptor(references, annotationDescriptor);
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            addDescriptor(references, descriptor);
+            addSignature(references, signature);
+            if (exceptions != null) {
+                for (String exception : exceptions) {
+                    addInternalName(references, exception);
+                }
+            }
+            return new MethodVisitor(FindBugsASM.ASM_VERSION) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                    addDescriptor(references, annotationDescriptor);
+                    return null;
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String annotationDescriptor, boolean visible) {
+                    addDescriptor(references, annotationDescriptor);
+                    return null;
+                }
+            };
+        }
+    }
+}
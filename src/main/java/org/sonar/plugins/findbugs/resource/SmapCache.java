@@ -0,0 +1,106 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs.resource;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the parsed SMAP of the class files, the classes without SMAP are cached too.
+ *
+ * The entries are keyed by the path of the class file and invalidated when its last modification time changes.
+ * The least recently used entries are evicted first. The cache can be used by several threads: a class file missing from
+ * the cache might be parsed by several of them, the last one wins.
+ */
+class SmapCache {
+
+    private final Map<String, CachedSmap> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    SmapCache(int maxEntries) {
+        this.entries = new LinkedHashMap<String, CachedSmap>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSmap> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param loader Parse the SMAP of the class file on a cache miss, empty if the class file has no SMAP
+     */
+    Optional<SmapParser> get(File classFile, Function<File, Optional<SmapParser>> loader) {
+        String key = classFile.getPath();
+        long lastModified = classFile.lastModified();
+
+        CachedSmap entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.lastModified == lastModified) {
+            hits.increment();
+            return entry.smap;
+        }
+
+        misses.increment();
+        Optional<SmapParser> smap = loader.apply(classFile);
+        synchronized (entries) {
+            entries.put(key, new CachedSmap(lastModified, smap));
+        }
+        return smap;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The ratio of lookups answered by the cache, between 0 and 1
+     */
+    double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hit(s), %d miss(es), hit rate %.1f%%", getHits(), getMisses(), getHitRate() * 100);
+    }
+
+    private static class CachedSmap {
+        private final long lastModified;
+        private final Optional<SmapParser> smap;
+
+        CachedSmap(long lastModified, Optional<SmapParser> smap) {
+            this.lastModified = lastModified;
+            this.smap = smap;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -170,6 +171,10 @@ public class SmapParser {
         return javaFilename;
     }
 
+    public Collection<FileInfo> getFileInfos() {
+        return fileinfo.values();
+    }
+
     public String getScriptFilename(int fileIndex) {
         FileInfo f = fileinfo.get(fileIndex);
         return f.name;
@@ -0,0 +1,66 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * The source files of a (sub)project indexed by file name, to find the files whose relative path ends with a given path
+ * without iterating over all the files of the project.
+ *
+ * The files sharing a name keep the iteration order of the file system, so the first match is the one a linear search
+ * would have found.
+ */
+class SourceFileIndex {
+
+    private final Map<String, List<InputFile>> filesByName = new HashMap<>();
+
+    SourceFileIndex(Iterable<InputFile> files) {
+        for (InputFile file : files) {
+            filesByName.computeIfAbsent(fileName(file.relativePath()), k -> new ArrayList<>(1)).add(file);
+        }
+    }
+
+    /**
+     * @param path Path of the source file (ie: <code>com/example/MyClass.java</code>), its file name must be complete
+     * @return The first file whose relative path ends with the given path, null if there is none
+     */
+    @CheckForNull
+    InputFile findByPathSuffix(String path) {
+        for (InputFile file : filesByName.getOrDefault(fileName(path), Collections.emptyList())) {
+            if (file.relativePath().endsWith(path)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private static String fileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
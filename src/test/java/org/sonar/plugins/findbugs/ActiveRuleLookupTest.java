@@ -0,0 +1,71 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.plugins.findbugs.rules.FbContribRulesDefinition;
+import org.sonar.plugins.findbugs.rules.FindbugsRulesDefinition;
+
+class ActiveRuleLookupTest {
+
+  @Test
+  void should_look_up_each_bug_type_once() {
+    ActiveRules activeRules = mock(ActiveRules.class);
+    ActiveRule findbugsRule = mock(ActiveRule.class);
+    ActiveRule fbContribRule = mock(ActiveRule.class);
+    when(activeRules.findByInternalKey(FindbugsRulesDefinition.REPOSITORY_KEY, "NP_NULL_ON_SOME_PATH")).thenReturn(findbugsRule);
+    when(activeRules.findByInternalKey(FbContribRulesDefinition.REPOSITORY_KEY, "ISB_INEFFICIENT_STRING_BUFFERING")).thenReturn(fbContribRule);
+
+    ActiveRuleLookup lookup = new ActiveRuleLookup(activeRules, Arrays.asList(FindbugsRulesDefinition.REPOSITORY_KEY, FbContribRulesDefinition.REPOSITORY_KEY));
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(lookup.find("NP_NULL_ON_SOME_PATH")).isSameAs(findbugsRule);
+      assertThat(lookup.find("ISB_INEFFICIENT_STRING_BUFFERING")).isSameAs(fbContribRule);
+      assertThat(lookup.find("UNKNOWN_BUG")).isNull();
+    }
+
+    verify(activeRules, times(1)).findByInternalKey(FindbugsRulesDefinition.REPOSITORY_KEY, "NP_NULL_ON_SOME_PATH");
+    verify(activeRules, times(1)).findByInternalKey(FbContribRulesDefinition.REPOSITORY_KEY, "ISB_INEFFICIENT_STRING_BUFFERING");
+    verify(activeRules, times(1)).findByInternalKey(FindbugsRulesDefinition.REPOSITORY_KEY, "UNKNOWN_BUG");
+    verify(activeRules, times(1)).findByInternalKey(FbContribRulesDefinition.REPOSITORY_KEY, "UNKNOWN_BUG");
+  }
+
+  @Test
+  void should_count_bugs_of_inactive_rules_per_type() {
+    ActiveRuleLookup lookup = new ActiveRuleLookup(mock(ActiveRules.class), Arrays.asList(FindbugsRulesDefinition.REPOSITORY_KEY));
+
+    lookup.find("SECOND_BUG");
+    lookup.find("FIRST_BUG");
+    lookup.find("SECOND_BUG");
+
+    assertThat(lookup.getInactiveRuleHits()).containsExactly(entry("FIRST_BUG", 1L), entry("SECOND_BUG", 2L));
+  }
+}
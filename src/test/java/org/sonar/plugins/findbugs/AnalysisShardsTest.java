@@ -0,0 +1,76 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.umd.cs.findbugs.Project;
+
+class AnalysisShardsTest {
+
+  private static final List<String> FILES = Arrays.asList(
+      "/classes/a/A1.class",
+      "/classes/b/B1.class",
+      "/classes/a/A2.class",
+      "/classes/c/C1.class",
+      "/classes/a/A3.class",
+      "/classes/b/B2.class");
+
+  @Test
+  void should_keep_packages_in_the_same_shard() {
+    List<List<String>> shards = AnalysisShards.partition(FILES, 2);
+
+    assertThat(shards).containsExactly(
+        Arrays.asList("/classes/a/A1.class", "/classes/a/A2.class", "/classes/a/A3.class"),
+        Arrays.asList("/classes/b/B1.class", "/classes/b/B2.class", "/classes/c/C1.class"));
+  }
+
+  @Test
+  void should_not_create_more_shards_than_packages() {
+    assertThat(AnalysisShards.partition(FILES, 10)).hasSize(3);
+    assertThat(AnalysisShards.partition(Collections.singletonList("Hello.class"), 4)).hasSize(1);
+  }
+
+  @Test
+  void should_be_deterministic() {
+    List<String> shuffled = Arrays.asList(FILES.get(5), FILES.get(3), FILES.get(1), FILES.get(4), FILES.get(0), FILES.get(2));
+
+    assertThat(AnalysisShards.partition(shuffled, 2)).isEqualTo(AnalysisShards.partition(FILES, 2));
+  }
+
+  @Test
+  void should_create_shard_project() throws Exception {
+    try (Project project = new Project()) {
+      project.addAuxClasspathEntry("/libs/some.jar");
+      FILES.forEach(project::addFile);
+
+      try (Project shardProject = AnalysisShards.createShardProject(project, Arrays.asList("/classes/c/C1.class"))) {
+        assertThat(shardProject.getFileList()).containsExactly("/classes/c/C1.class");
+        assertThat(shardProject.getAuxClasspathEntryList()).containsExactly("/libs/some.jar");
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import edu.umd.cs.findbugs.Project;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuxClasspathCacheTest {
+
+  @TempDir
+  public File temporaryFolder;
+
+  @Test
+  void should_index_the_classes_of_a_jar() throws Exception {
+    File jar = createJar("hello.jar", null, "Hello.class", "Hello$1.class");
+
+    AuxClasspathCache.JarMetadata jarMetadata = new AuxClasspathCache().getJarMetadata(jar, null);
+
+    assertThat(jarMetadata.getHash()).hasSize(64);
+    assertThat(jarMetadata.hasManifestClassPath()).isFalse();
+    assertThat(jarMetadata.hasResources()).isFalse();
+    assertThat(jarMetadata.getClassNames()).containsExactlyInAnyOrder("Hello", "Hello$1");
+    assertThat(jarMetadata.getSupertypes("Hello")).startsWith("java.lang.Object");
+    assertThat(jarMetadata.getSupertypes("Missing")).isNull();
+  }
+
+  @Test
+  void should_reuse_the_metadata_stored_on_disk() throws Exception {
+    File cacheDir = new File(temporaryFolder, "cache");
+    File jar = createJar("hello.jar", null, "Hello.class");
+
+    AuxClasspathCache.JarMetadata indexed = new AuxClasspathCache().getJarMetadata(jar, cacheDir);
+    File cacheFile = new File(cacheDir, indexed.getHash() + ".bin");
+    assertThat(cacheFile).isFile();
+
+    // Another scanner execution, the same content in another location
+    File copy = createJar("copy/hello.jar", null, "Hello.class");
+    AuxClasspathCache.JarMetadata cached = new AuxClasspathCache().getJarMetadata(copy, cacheDir);
+
+    assertThat(cached.getHash()).isEqualTo(indexed.getHash());
+    assertThat(cached.getClassNames()).containsExactly("Hello");
+    assertThat(cached.getSupertypes("Hello")).containsExactly(indexed.getSupertypes("Hello"));
+    assertThat(cacheDir.listFiles()).containsExactly(cacheFile);
+  }
+
+  @Test
+  void should_remove_duplicate_and_empty_jars() throws Exception {
+    File jar = createJar("hello.jar", null, "Hello.class");
+    File copy = createJar("copy/hello.jar", null, "Hello.class");
+    File emptyJar = createJar("empty.jar", null);
+    File resourcesJar = createJar("resources.jar", null, "messages.properties");
+    File pathingJar = createJar("pathing.jar", "hello.jar");
+    File otherJar = createJar("other.jar", null, "Hello$1.class");
+    File classesDir = new File(temporaryFolder, "classes");
+    Files.createDirectories(classesDir.toPath());
+
+    try (Project project = new Project()) {
+      project.addAuxClasspathEntry(jar.getPath());
+      project.addAuxClasspathEntry(copy.getPath());
+      project.addAuxClasspathEntry(classesDir.getPath());
+      project.addAuxClasspathEntry(emptyJar.getPath());
+      project.addAuxClasspathEntry(resourcesJar.getPath());
+      project.addAuxClasspathEntry(pathingJar.getPath());
+      project.addAuxClasspathEntry(otherJar.getPath());
+
+      new AuxClasspathCache().removeRedundantJars(project, null);
+
+      // Only the copy and the empty jar are removed, the other entries keep their order
+      assertThat(project.getAuxClasspathEntryList())
+        .containsExactly(jar.getPath(), classesDir.getPath(), resourcesJar.getPath(), pathingJar.getPath(), otherJar.getPath());
+    }
+  }
+
+  @Test
+  void should_remove_unreferenced_jars() throws Exception {
+    File classesDir = new File(temporaryFolder, "classes");
+    writeClass(classesDir, "app/Main", "java/lang/Object", "Llib/Sub;");
+    File subJar = createJar("sub.jar", null);
+    writeClassInJar(subJar, "lib/Sub", "base/Base");
+    File baseJar = createJar("base.jar", null);
+    writeClassInJar(baseJar, "base/Base", "java/lang/Object");
+    File unusedJar = createJar("unused.jar", null);
+    writeClassInJar(unusedJar, "unused/Lib", "java/lang/Object");
+    File pathingJar = createJar("pathing.jar", "unused.jar");
+
+    try (Project project = new Project()) {
+      project.addFile(new File(classesDir, "app/Main.class").getPath());
+      project.addAuxClasspathEntry(unusedJar.getPath());
+      project.addAuxClasspathEntry(subJar.getPath());
+      project.addAuxClasspathEntry(pathingJar.getPath());
+      project.addAuxClasspathEntry(baseJar.getPath());
+
+      new AuxClasspathCache().removeUnreferencedJars(project, null);
+
+      assertThat(project.getAuxClasspathEntryList()).containsExactly(subJar.getPath(), pathingJar.getPath(), baseJar.getPath());
+    }
+  }
+
+  @Test
+  void should_keep_jars_of_supertypes_of_classes_in_directories() throws Exception {
+    File classesDir = new File(temporaryFolder, "classes");
+    writeClass(classesDir, "app/Main", "java/lang/Object", "Lother/Module;");
+    // Classes of another module, on the auxiliary classpath
+    File otherModuleDir = new File(temporaryFolder, "other-classes");
+    writeClass(otherModuleDir, "other/Module", "base/Base", null);
+    File baseJar = createJar("base.jar", null);
+    writeClassInJar(baseJar, "base/Base", "java/lang/Object");
+    File unusedJar = createJar("unused.jar", null);
+    writeClassInJar(unusedJar, "unused/Lib", "java/lang/Object");
+
+    try (Project project = new Project()) {
+      project.addFile(new File(classesDir, "app/Main.class").getPath());
+      project.addAuxClasspathEntry(otherModuleDir.getPath());
+      project.addAuxClasspathEntry(baseJar.getPath());
+      project.addAuxClasspathEntry(unusedJar.getPath());
+
+      new AuxClasspathCache().removeUnreferencedJars(project, null);
+
+      assertThat(project.getAuxClasspathEntryList()).containsExactly(otherModuleDir.getPath(), baseJar.getPath());
+    }
+  }
+
+  private static byte[] generateClass(String name, String superName, String fieldDescriptor) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+    if (fieldDescriptor != null) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE, "field", fieldDescriptor, null, null).visitEnd();
+    }
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static void writeClass(File dir, String name, String superName, String fieldDescriptor) throws IOException {
+    File classFile = new File(dir, name + ".class");
+    Files.createDirectories(classFile.getParentFile().toPath());
+    Files.write(classFile.toPath(), generateClass(name, superName, fieldDescriptor));
+  }
+
+  private static void writeClassInJar(File jar, String name, String superName) throws IOException {
+    try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+      output.putNextEntry(createEntry(name + ".class"));
+      output.write(generateClass(name, superName, null));
+      output.closeEntry();
+    }
+  }
+
+  private File createJar(String path, String manifestClassPath, String... classFiles) throws IOException {
+    File jar = new File(temporaryFolder, path);
+    Files.createDirectories(jar.getParentFile().toPath());
+
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (manifestClassPath != null) {
+      manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, manifestClassPath);
+    }
+
+    try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+      // Fixed entry times, so the copies of a jar have the same content
+      output.putNextEntry(createEntry(JarFile.MANIFEST_NAME));
+      manifest.write(output);
+      output.closeEntry();
+      for (String classFile : classFiles) {
+        output.putNextEntry(createEntry(classFile));
+        if (classFile.endsWith(".class")) {
+          output.write(Files.readAllBytes(new File("test-resources/classes", classFile).toPath()));
+        } else {
+          output.write(classFile.getBytes(StandardCharsets.UTF_8));
+        }
+        output.closeEntry();
+      }
+    }
+    return jar;
+  }
+
+  private static JarEntry createEntry(String name) {
+    JarEntry entry = new JarEntry(name);
+    entry.setTime(0);
+    return entry;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ClassFileIndexTest {
+
+  @TempDir
+  public File temp;
+
+  @Test
+  void should_index_class_files_by_class_name() throws IOException {
+    File firstDir = new File(temp, "first");
+    File secondDir = new File(temp, "second");
+    File jar = new File(temp, "library.jar");
+    FileUtils.touch(new File(firstDir, "com/example/Foo.class"));
+    FileUtils.touch(new File(firstDir, "com/example/Foo$Inner.class"));
+    FileUtils.touch(new File(secondDir, "com/example/Foo.class"));
+    FileUtils.touch(new File(secondDir, "Bar.class"));
+    FileUtils.touch(jar);
+
+    ClassFileIndex index = ClassFileIndex.build(Arrays.asList(firstDir, jar, secondDir));
+
+    assertThat(index.size()).isEqualTo(3);
+    // The first directory of the classpath wins
+    assertThat(index.find("com.example.Foo")).isEqualTo(new File(firstDir, "com/example/Foo.class").getCanonicalFile());
+    assertThat(index.find("com.example.Foo$Inner")).isEqualTo(new File(firstDir, "com/example/Foo$Inner.class").getCanonicalFile());
+    assertThat(index.find("Bar")).isEqualTo(new File(secondDir, "Bar.class").getCanonicalFile());
+    assertThat(index.find("com.example.Missing")).isNull();
+  }
+}
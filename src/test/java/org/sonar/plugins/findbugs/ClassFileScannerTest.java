@@ -0,0 +1,89 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ClassFileScannerTest {
+
+  @TempDir
+  public File temporaryFolder;
+
+  @Test
+  void should_classify_class_files() throws IOException {
+    File classes = new File(temporaryFolder, "classes");
+    createFile(classes, "module-info.class");
+    createFile(classes, "org/example/Test.class");
+    createFile(classes, "org/example/message.txt");
+    createFile(classes, "org/example/page1_jsp.class");
+    createFile(classes, "org/example/page1_jsp$1.class");
+    createFile(classes, "jsp_servlet/org/example/weblogic.class");
+    File testClasses = new File(temporaryFolder, "test-classes");
+    createFile(testClasses, "org/example/UnitTest.class");
+
+    List<ClassFileScanner.ClassFile> classFiles = ClassFileScanner.scan(Arrays.asList(classes, new File(temporaryFolder, "missing")), false);
+    classFiles.addAll(ClassFileScanner.scan(Collections.singletonList(testClasses), true));
+
+    File canonicalClasses = classes.getCanonicalFile();
+    File canonicalTestClasses = testClasses.getCanonicalFile();
+    assertThat(classFiles)
+      .extracting(ClassFileScanner.ClassFile::getFile, ClassFileScanner.ClassFile::getClassName, ClassFileScanner.ClassFile::isPrecompiledJsp, ClassFileScanner.ClassFile::isModuleInfo, ClassFileScanner.ClassFile::isTest)
+      .containsExactly(
+        tuple(new File(canonicalClasses, "module-info.class"), "module-info", false, true, false),
+        tuple(new File(canonicalClasses, "jsp_servlet/org/example/weblogic.class"), "jsp_servlet.org.example.weblogic", true, false, false),
+        tuple(new File(canonicalClasses, "org/example/Test.class"), "org.example.Test", false, false, false),
+        tuple(new File(canonicalClasses, "org/example/page1_jsp$1.class"), "org.example.page1_jsp$1", true, false, false),
+        tuple(new File(canonicalClasses, "org/example/page1_jsp.class"), "org.example.page1_jsp", true, false, false),
+        tuple(new File(canonicalTestClasses, "org/example/UnitTest.class"), "org.example.UnitTest", false, false, true));
+  }
+
+  @Test
+  void should_resolve_linked_directories() throws IOException {
+    File target = new File(temporaryFolder, "target");
+    createFile(target, "jsp_servlet/Page.class");
+    File classes = new File(temporaryFolder, "classes");
+    Files.createDirectories(classes.toPath());
+    Files.createSymbolicLink(new File(classes, "linked").toPath(), new File(target, "jsp_servlet").toPath());
+
+    List<ClassFileScanner.ClassFile> classFiles = ClassFileScanner.scan(Collections.singletonList(classes), false);
+
+    assertThat(classFiles).hasSize(1);
+    assertThat(classFiles.get(0).getFile()).isEqualTo(new File(target, "jsp_servlet/Page.class").getCanonicalFile());
+    assertThat(classFiles.get(0).getClassName()).isEqualTo("linked.Page");
+    assertThat(classFiles.get(0).isPrecompiledJsp()).isTrue();
+  }
+
+  private static void createFile(File dir, String path) throws IOException {
+    File file = new File(dir, path);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.createFile(file.toPath());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.detect.FindNullDeref;
+import edu.umd.cs.findbugs.detect.FindUnrelatedTypesInGenericContainer;
+import edu.umd.cs.findbugs.log.Profiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DetectorProfileTest {
+
+  @TempDir
+  public File temporaryFolder;
+
+  @Test
+  void should_sum_profiles_and_attribute_bugs_to_detectors() throws Exception {
+    DetectorFactory nullDerefFactory = DetectorFactoryCollection.instance().getFactoryByClassName(FindNullDeref.class.getName());
+    String nullDerefBugType = nullDerefFactory.getReportedBugPatterns().iterator().next().getType();
+
+    DetectorProfile detectorProfile = new DetectorProfile();
+    detectorProfile.addProfiler(profile(FindNullDeref.class, 30));
+    detectorProfile.addProfiler(profile(FindNullDeref.class, 30));
+    detectorProfile.addProfiler(profile(FindUnrelatedTypesInGenericContainer.class, 15));
+    detectorProfile.countBugs(Arrays.asList(
+      new ReportedBug(nullDerefBugType, "message", "com.helloworld.Foo", 12, "com/helloworld/Foo.java", "com.helloworld.Foo"),
+      new ReportedBug(nullDerefBugType, "message", "com.helloworld.Bar", 3, "com/helloworld/Bar.java", "com.helloworld.Bar")));
+
+    List<DetectorProfile.DetectorCost> detectorCosts = detectorProfile.getDetectorCosts(DetectorFactoryCollection.instance().getFactories());
+
+    assertThat(detectorCosts).hasSize(2);
+    DetectorProfile.DetectorCost nullDerefCost = detectorCosts.get(0);
+    assertThat(nullDerefCost.detector).isEqualTo(FindNullDeref.class.getName());
+    assertThat(nullDerefCost.pluginId).isEqualTo("edu.umd.cs.findbugs.plugins.core");
+    assertThat(nullDerefCost.totalMilliseconds).isGreaterThanOrEqualTo(60);
+    assertThat(nullDerefCost.classesVisited).isEqualTo(2);
+    assertThat(nullDerefCost.bugs).isEqualTo(2);
+    assertThat(detectorCosts.get(1).bugs).isZero();
+
+    File reportFile = new File(temporaryFolder, "findbugs-profile.csv");
+    DetectorProfile.writeReport(reportFile, detectorCosts);
+    List<String> lines = FileUtils.readLines(reportFile, StandardCharsets.UTF_8);
+    assertThat(lines).hasSize(3);
+    assertThat(lines.get(1)).startsWith(FindNullDeref.class.getName() + ",edu.umd.cs.findbugs.plugins.core,").endsWith(",2,2");
+  }
+
+  @Test
+  void should_be_empty_without_profile() {
+    DetectorProfile detectorProfile = new DetectorProfile();
+    detectorProfile.addProfiler(new Profiler());
+
+    assertThat(detectorProfile.isEmpty()).isTrue();
+  }
+
+  private static Profiler profile(Class<?> detectorClass, long millis) throws InterruptedException {
+    Profiler profiler = new Profiler();
+    profiler.start(detectorClass);
+    Thread.sleep(millis);
+    profiler.end(detectorClass);
+    return profiler;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.utils.TempFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExtractedJarCacheTest {
+
+  @TempDir
+  public File temporaryFolder;
+
+  private File cacheDir;
+  private File tempDir;
+  private TempFolder tempFolder;
+
+  @BeforeEach
+  public void setUp() {
+    cacheDir = new File(temporaryFolder, "jar-cache");
+    tempDir = new File(temporaryFolder, "temp");
+    tempFolder = mock(TempFolder.class);
+    when(tempFolder.newDir(any())).thenReturn(tempDir);
+  }
+
+  @Test
+  void should_extract_read_only_jar_once() throws IOException {
+    File jar = new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir);
+
+    assertThat(jar).isFile();
+    assertThat(jar.getName()).isEqualTo("jsr305.jar");
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      assertThat(Files.getPosixFilePermissions(jar.toPath())).doesNotContain(PosixFilePermission.OWNER_WRITE);
+    }
+    assertThat(jar.getParentFile().getName()).isEqualTo(Sha256.hash(jar));
+    assertThat(jar.getParentFile().getParentFile().getParentFile()).isEqualTo(cacheDir);
+    verify(tempFolder, never()).newDir(any());
+
+    // Another scanner execution uses the same file
+    long lastModified = jar.lastModified();
+    assertThat(new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir)).isEqualTo(jar);
+    assertThat(jar.lastModified()).isEqualTo(lastModified);
+  }
+
+  @Test
+  void should_extract_modified_jar_again() throws IOException {
+    File jar = new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir);
+    String hash = Sha256.hash(jar);
+    assertThat(jar.setWritable(true)).isTrue();
+    Files.write(jar.toPath(), new byte[] {1, 2, 3});
+
+    File extractedAgain = new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir);
+
+    assertThat(extractedAgain).isEqualTo(jar);
+    assertThat(Sha256.hash(extractedAgain)).isEqualTo(hash);
+  }
+
+  @Test
+  void should_not_hash_jar_again_when_size_and_modification_time_are_unchanged() throws IOException {
+    File jar = new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir);
+    File hashFile = new File(jar.getParentFile(), "jsr305.jar.sha256");
+    assertThat(new String(Files.readAllBytes(hashFile.toPath()), StandardCharsets.UTF_8))
+      .isEqualTo(Sha256.hash(jar) + " " + jar.length() + " " + jar.lastModified());
+
+    // The recorded hash is only compared when the size or the modification time changed
+    String recorded = "0000 " + jar.length() + " " + jar.lastModified();
+    Files.write(hashFile.toPath(), recorded.getBytes(StandardCharsets.UTF_8));
+    assertThat(new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir)).isEqualTo(jar);
+    assertThat(new String(Files.readAllBytes(hashFile.toPath()), StandardCharsets.UTF_8)).isEqualTo(recorded);
+  }
+
+  @Test
+  void should_keep_jar_touched_without_change() throws IOException {
+    File jar = new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir);
+    File hashFile = new File(jar.getParentFile(), "jsr305.jar.sha256");
+    long lastModified = jar.lastModified() - 60_000;
+    assertThat(jar.setLastModified(lastModified)).isTrue();
+
+    assertThat(new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir)).isEqualTo(jar);
+
+    assertThat(jar.lastModified()).isEqualTo(lastModified);
+    assertThat(new String(Files.readAllBytes(hashFile.toPath()), StandardCharsets.UTF_8))
+      .isEqualTo(Sha256.hash(jar) + " " + jar.length() + " " + lastModified);
+  }
+
+  @Test
+  void should_extract_in_temp_folder_when_cache_is_not_writable() throws IOException {
+    Files.write(cacheDir.toPath(), new byte[0]);
+
+    File jar = new ExtractedJarCache(tempFolder).getJar("/jsr305.jar", cacheDir);
+
+    assertThat(jar).isEqualTo(new File(tempDir, "jsr305.jar")).isFile();
+  }
+
+  @Test
+  void should_ignore_jar_not_packaged() {
+    ExtractedJarCache jarCache = new ExtractedJarCache(tempFolder);
+
+    assertThat(jarCache.getJar("/missing.jar", cacheDir)).isNull();
+    assertThat(jarCache.getJar("/missing.jar", null)).isNull();
+    verify(tempFolder, never()).newDir(any());
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.plugins.findbugs;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -32,9 +33,11 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -49,11 +52,11 @@ import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.testfixtures.log.LogTesterJUnit5;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.plugins.findbugs.classpath.ClasspathLocator;
 import org.sonar.plugins.findbugs.configuration.SimpleConfiguration;
 import org.sonar.plugins.findbugs.rule.FakeActiveRules;
 
-import edu.umd.cs.findbugs.ClassScreener;
 import edu.umd.cs.findbugs.Project;
 
 class FindbugsConfigurationTest {
@@ -88,8 +91,10 @@ class FindbugsConfigurationTest {
     activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
 
     configuration = new SimpleConfiguration();
+    configuration.setProperty("sonar.userHome", new File(temp, "userHome").getAbsolutePath());
     classpathLocator = mock(ClasspathLocator.class);
-    conf = new FindbugsConfiguration(fs, configuration, activeRules, classpathLocator);
+    conf = new FindbugsConfiguration(fs, configuration, activeRules, classpathLocator, new ExtractedJarCache(mock(TempFolder.class)),
+      new IncludeFilterCache());
   }
 
   @Test
@@ -98,10 +103,11 @@ class FindbugsConfigurationTest {
   }
 
   @Test
-  void should_save_include_config() throws Exception {
-    conf.saveIncludeConfigXml();
-    File findbugsIncludeFile = new File(fs.workDir(), "findbugs-include.xml");
-    assertThat(findbugsIncludeFile).exists();
+  void should_build_include_filter() {
+    IncludeFilter includeFilter = conf.getIncludeFilter();
+
+    assertThat(includeFilter.getBugTypes()).isNotEmpty();
+    assertThat(conf.getIncludeFilter()).isSameAs(includeFilter);
   }
 
   @Test
@@ -118,6 +124,29 @@ class FindbugsConfigurationTest {
     assertThat(conf.getTimeout()).isEqualTo(1);
   }
 
+  @Test
+  void should_return_timeout_mode() {
+    assertThat(conf.isPartialResultsOnTimeout()).as("default timeout mode").isFalse();
+    configuration.setProperty(FindbugsConstants.TIMEOUT_MODE_PROPERTY, "Partial");
+    assertThat(conf.isPartialResultsOnTimeout()).isTrue();
+  }
+
+  @Test
+  void should_return_issue_mapping_threads() {
+    assertThat(conf.getIssueMappingThreads()).as("default issue mapping threads").isZero();
+    configuration.setProperty(FindbugsConstants.ISSUE_MAPPING_THREADS_PROPERTY, 4);
+    assertThat(conf.getIssueMappingThreads()).isEqualTo(4);
+    configuration.setProperty(FindbugsConstants.ISSUE_MAPPING_THREADS_PROPERTY, -1);
+    assertThat(conf.getIssueMappingThreads()).isZero();
+  }
+
+  @Test
+  void should_return_fork_jvm_args() {
+    assertThat(conf.getForkJvmArgs()).isEmpty();
+    configuration.setProperty(FindbugsConstants.FORK_JVM_ARGS_PROPERTY, " -Xmx2g  -XX:+UseParallelGC ");
+    assertThat(conf.getForkJvmArgs()).containsExactly("-Xmx2g", "-XX:+UseParallelGC");
+  }
+
   @Test
   void should_return_excludes_filters() {
     assertThat(conf.getExcludesFilters()).isEmpty();
@@ -163,41 +192,31 @@ class FindbugsConfigurationTest {
   }
 
   @Test
-  void should_copy_lib_in_working_dir() {
-    String jsr305 = "findbugs/jsr305.jar";
-    String annotations = "findbugs/annotations.jar";
-
-    // stop at start
-    conf.stop();
-    assertThat(new File(fs.workDir(), jsr305)).doesNotExist();
-    assertThat(new File(fs.workDir(), annotations)).doesNotExist();
-
-    conf.copyLibs();
-    assertThat(new File(fs.workDir(), jsr305)).isFile();
-    assertThat(new File(fs.workDir(), annotations)).isFile();
-
-    // copy again
+  void should_extract_libs_in_jar_cache() throws IOException {
     conf.copyLibs();
-    assertThat(new File(fs.workDir(), jsr305)).isFile();
-    assertThat(new File(fs.workDir(), annotations)).isFile();
+    File jsr305 = findFile(conf.getJarCacheDir(), "jsr305.jar");
+    File annotations = findFile(conf.getJarCacheDir(), "annotations.jar");
+    assertThat(jsr305).isFile();
+    assertThat(annotations).isFile();
 
+    // The jars are shared, they are kept after the analysis
     conf.stop();
-    assertThat(new File(fs.workDir(), jsr305)).doesNotExist();
-    assertThat(new File(fs.workDir(), annotations)).doesNotExist();
+    assertThat(jsr305).isFile();
+    assertThat(annotations).isFile();
 
-  }
+    try (Project findbugsProject = new Project()) {
+      conf.initializeFindbugsProject(findbugsProject);
 
-  @Test
-  void should_get_fbcontrib() {
-    conf.copyLibs();
-    assertThat(conf.getFbContribJar()).isFile();
+      assertThat(findbugsProject.getAuxClasspathEntryList()).contains(jsr305.getCanonicalPath(), annotations.getCanonicalPath());
+    }
   }
 
-  @Test
-  void should_get_findSecBugs() {
-    conf.copyLibs();
-    assertThat(conf.getFindSecBugsJar()).isFile();
+  private static File findFile(File dir, String name) throws IOException {
+    try (Stream<Path> files = Files.walk(dir.toPath())) {
+      return files.filter(path -> path.getFileName().toString().equals(name)).findFirst().map(Path::toFile).orElse(null);
+    }
   }
+
   
   @Test
   void should_get_only_analyze_filter() {
@@ -207,42 +226,32 @@ class FindbugsConfigurationTest {
 	 configuration.setProperty(FindbugsConstants.ONLY_ANALYZE_PROPERTY, "");
 	 assertNull(conf.getOnlyAnalyzeFilter());
 	 
-	 // Screener made correctly for class files
+	 // Filter made correctly for class files
 	 configuration.setProperty(FindbugsConstants.ONLY_ANALYZE_PROPERTY, "com.example.Test");
-	 ClassScreener expected = conf.getOnlyAnalyzeFilter();
+	 OnlyAnalyzeFilter expected = conf.getOnlyAnalyzeFilter();
 	 assertNotNull(expected);	
-	 assertTrue(expected.matches("any/random/src/main/java/com/exam"
-	 		+ "ple/Test.class"));
+	 assertTrue(expected.matches("com.example.Test"));
+	 assertFalse(expected.matches("com.example.Test2"));
 	 
-	 // Screener made correctly for package
+	 // Filter made correctly for package
 	 configuration.setProperty(FindbugsConstants.ONLY_ANALYZE_PROPERTY, "com.example.*");
 	 expected = conf.getOnlyAnalyzeFilter();
 	 assertNotNull(expected);
-	 assertTrue(expected.matches("any/random/src/main/java/com/exam"
-	 		+ "ple/Test.class"));
-	 assertTrue(expected.matches("any/random/src/main/java/com/exam"
-		 		+ "ple/Test2.class"));
+	 assertTrue(expected.matches("com.example.Test"));
+	 assertTrue(expected.matches("com.example.Test2"));
+	 assertFalse(expected.matches("com.example.innerPackage.Test2"));
 	 
-	 // Screener made correctly for deep match
+	 // Filter made correctly for deep match
 	 configuration.setProperty(FindbugsConstants.ONLY_ANALYZE_PROPERTY, "com.example.-");
 	 expected = conf.getOnlyAnalyzeFilter();
 	 assertNotNull(expected);	
-	 assertTrue(expected.matches("any/random/src/main/java/com/exam"
-		 		+ "ple/Test1.class"));
-	 assertTrue(expected.matches("any/random/src/main/java/com/exam"
-		 		+ "ple/innerPackage/Test2.class"));
+	 assertTrue(expected.matches("com.example.Test1"));
+	 assertTrue(expected.matches("com.example.innerPackage.Test2"));
 	 // To prevent other test to fail
 	 configuration.setProperty(FindbugsConstants.ONLY_ANALYZE_PROPERTY, "");
 	 
   }
 
-  @Test
-  void scanEmptyFolderForAdditionalClasses() {
-    List<File> classes = FindbugsConfiguration.scanForAdditionalClasses(temp, f -> true);
-    
-    assertThat(classes).isEmpty();
-  }
-  
   @ParameterizedTest
   @CsvSource({
     "true",
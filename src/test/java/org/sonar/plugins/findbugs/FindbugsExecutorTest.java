@@ -19,31 +19,56 @@
  */
 package org.sonar.plugins.findbugs;
 
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.FindBugs2;
 import edu.umd.cs.findbugs.Project;
 
 import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedConstruction;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.config.Configuration;
+import org.sonar.api.notifications.AnalysisWarnings;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.plugins.findbugs.configuration.SimpleConfiguration;
+import org.sonar.plugins.findbugs.rule.FakeActiveRules;
+import org.sonar.plugins.findbugs.rules.FindbugsRulesDefinition;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 class FindbugsExecutorTest {
@@ -56,6 +81,13 @@ class FindbugsExecutorTest {
 
   Configuration configEmpty;
 
+  SensorContext sensorContext;
+
+  FindbugsPluginRegistry pluginRegistry;
+
+  AnalysisWarnings analysisWarnings;
+  AuxClasspathCache auxClasspathCache;
+
   @BeforeEach
   public void setUp() {
     fsEmpty = mock(FileSystem.class);
@@ -67,6 +99,39 @@ class FindbugsExecutorTest {
     configEmpty = mock(Configuration.class);
     when(configEmpty.getStringArray(any())).thenReturn(new String[0]);
     when(configEmpty.get(any())).thenReturn(Optional.of(""));
+
+    ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
+    sensorContext = mock(SensorContext.class);
+    when(sensorContext.activeRules()).thenReturn(activeRules);
+
+    TempFolder tempFolder = mock(TempFolder.class);
+    when(tempFolder.newDir(any())).thenReturn(new File(temporaryFolder, "plugins"));
+    pluginRegistry = new FindbugsPluginRegistry(new ExtractedJarCache(tempFolder));
+
+    analysisWarnings = mock(AnalysisWarnings.class);
+    auxClasspathCache = new AuxClasspathCache();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    pluginRegistry.stop();
+  }
+
+  @Test
+  void shouldNotChangeTheAuxClasspathWhenPruningIsDisabled() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    when(conf.getTargetXMLReport()).thenReturn(new File(temporaryFolder, "findbugs-report.xml"));
+    AuxClasspathCache mockedAuxClasspathCache = mock(AuxClasspathCache.class);
+
+    new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, mockedAuxClasspathCache).execute();
+
+    verifyNoInteractions(mockedAuxClasspathCache);
+
+    when(conf.isPruneClasspath()).thenReturn(true);
+    new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, mockedAuxClasspathCache).execute();
+
+    verify(mockedAuxClasspathCache).removeRedundantJars(any(), any());
+    verify(mockedAuxClasspathCache).removeUnreferencedJars(any(), any());
   }
 
   @Test
@@ -76,7 +141,7 @@ class FindbugsExecutorTest {
     File reportFile = new File(temporaryFolder, "findbugs-report.xml");
     when(conf.getTargetXMLReport()).thenReturn(reportFile);
 
-    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty).execute();
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
 
     assertThat(reportFile).exists();
     String report = FileUtils.readFileToString(reportFile, StandardCharsets.UTF_8);
@@ -90,6 +155,195 @@ class FindbugsExecutorTest {
     checkAnalysisResult(analysisResult);
   }
 
+  @Test
+  void canReuseExistingReport() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    File reportFile = new File(temporaryFolder, "target/spotbugsXml.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    AnalysisResult engineAnalysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    // The engine is not run again, the bugs are read from the report generated above
+    FileSystem fs = mock(FileSystem.class);
+    when(fs.baseDir()).thenReturn(temporaryFolder);
+    ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
+    when(sensorContext.activeRules()).thenReturn(activeRules);
+    when(conf.getTargetXMLReport()).thenReturn(new File(temporaryFolder, "findbugs-result.xml"));
+
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fs, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    List<ReportedBug> expectedBugs = filterActiveBugs(engineAnalysisResult.getReportedBugs(), activeRules);
+    assertThat(expectedBugs).isNotEmpty();
+    assertThat(analysisResult.getReportedBugs()).containsExactlyInAnyOrderElementsOf(expectedBugs);
+    assertThat(new File(temporaryFolder, "findbugs-result.xml")).doesNotExist();
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void canMergeExistingReports() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    File reportFile = new File(temporaryFolder, "build/reports/spotbugs/main.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    AnalysisResult engineAnalysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+    // The same bugs found by another task, and a report of another project
+    FileUtils.copyFile(reportFile, new File(temporaryFolder, "build/reports/spotbugs/copy.xml"));
+    String otherReport = FileUtils.readFileToString(new File("src/test/resources/org/sonar/plugins/findbugs/findbugsReport.xml"), StandardCharsets.UTF_8)
+      .replace("analysisTimestamp='1282919402891'", "analysisTimestamp='" + System.currentTimeMillis() + "'");
+    FileUtils.write(new File(temporaryFolder, "build/reports/spotbugs/test.xml"), otherReport, StandardCharsets.UTF_8);
+
+    FileSystem fs = mock(FileSystem.class);
+    when(fs.baseDir()).thenReturn(temporaryFolder);
+    Configuration config = mock(Configuration.class);
+    when(config.getStringArray(FindbugsConstants.REPORT_PATHS)).thenReturn(new String[] {"build/reports/**/*.xml"});
+    ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
+    when(sensorContext.activeRules()).thenReturn(activeRules);
+    when(conf.getTargetXMLReport()).thenReturn(new File(temporaryFolder, "findbugs-result.xml"));
+
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fs, config, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    List<ReportedBug> expectedBugs = filterActiveBugs(engineAnalysisResult.getReportedBugs(), activeRules);
+    assertThat(analysisResult.getReportedBugs()).containsAll(expectedBugs).doesNotHaveDuplicates().hasSize(expectedBugs.size() + 2);
+    assertThat(analysisResult.getReportedBugs()).extracting(ReportedBug::getClassName)
+      .containsOnly("Hello", "org.sonar.commons.ZipUtils", "org.sonar.commons.resources.MeasuresDao$1");
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void canAnalyzeClassesChangedSinceExistingReport() throws Exception {
+    File classesDir = new File(temporaryFolder, "classes");
+    FileUtils.copyDirectory(new File("test-resources/classes"), classesDir);
+    FindbugsConfiguration conf = mockConf();
+    doAnswer(invocation -> {
+      Project project = invocation.getArgument(0);
+      project.addFile(classesDir.getCanonicalPath());
+      project.addSourceDirs(Collections.singletonList(new File("test-resources/src").getCanonicalPath()));
+      return null;
+    }).when(conf).initializeFindbugsProject(any());
+    when(conf.getConfidenceLevel()).thenReturn("low");
+    File reportFile = new File(temporaryFolder, "target/spotbugsXml.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    AnalysisResult engineAnalysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    // Only the anonymous class is analyzed again, its bug is reported on the outer class which did not change
+    File changedClass = new File(classesDir, "Hello$1.class");
+    assertThat(changedClass.setLastModified(System.currentTimeMillis() + 60000L)).isTrue();
+    FileSystem fs = mock(FileSystem.class);
+    when(fs.baseDir()).thenReturn(temporaryFolder);
+    ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
+    when(sensorContext.activeRules()).thenReturn(activeRules);
+    File newReportFile = new File(temporaryFolder, "findbugs-result.xml");
+    when(conf.getTargetXMLReport()).thenReturn(newReportFile);
+
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fs, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    assertThat(newReportFile).exists();
+    assertThat(FileUtils.readFileToString(newReportFile, StandardCharsets.UTF_8)).contains("SIC_INNER_SHOULD_BE_STATIC_ANON").doesNotContain("EQ_ALWAYS_FALSE");
+    // The bugs found by the engine are filtered by the sensor, the ones read from the report are filtered while parsing.
+    // The bug found again in the anonymous class is reported on it instead of the outer class.
+    assertThat(filterActiveBugs(analysisResult.getReportedBugs(), activeRules))
+      .extracting(bug -> bug.getType() + "|" + bug.getClassFile() + "|" + bug.getStartLine())
+      .containsExactlyInAnyOrderElementsOf(filterActiveBugs(engineAnalysisResult.getReportedBugs(), activeRules).stream()
+        .map(bug -> bug.getType() + "|" + bug.getClassFile() + "|" + bug.getStartLine()).collect(Collectors.toList()));
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void canAnalyzeOnlyClassesOfChangedFiles() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    doAnswer(invocation -> {
+      Project project = invocation.getArgument(0);
+      project.addFile(new File("test-resources/classes/Hello.class").getCanonicalPath());
+      project.addFile(new File("test-resources/classes/Hello$1.class").getCanonicalPath());
+      project.addSourceDirs(Collections.singletonList(new File("test-resources/src").getCanonicalPath()));
+      return null;
+    }).when(conf).initializeFindbugsProject(any());
+    when(conf.isSkipUnchangedFiles()).thenReturn(true);
+    when(sensorContext.canSkipUnchangedFiles()).thenReturn(true);
+    File reportFile = new File(temporaryFolder, "findbugs-result.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+
+    // Nothing to analyze when the pull request did not change any source file
+    FileSystem fs = mock(FileSystem.class);
+    when(fs.predicates()).thenReturn(predicatesEmpty);
+    when(fs.inputFiles(any())).thenReturn(new ArrayList<InputFile>());
+    AnalysisResult skippedAnalysisResult = new FindbugsExecutor(conf, fs, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    assertThat(skippedAnalysisResult.getReportedBugs()).isEmpty();
+    assertThat(reportFile).doesNotExist();
+
+    InputFile changedFile = mock(InputFile.class);
+    when(changedFile.uri()).thenReturn(new File("test-resources/src/Hello.java").getCanonicalFile().toURI());
+    when(fs.inputFiles(any())).thenReturn(Collections.singletonList(changedFile));
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fs, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    assertThat(reportFile).exists();
+    assertThat(analysisResult.getReportedBugs()).isNotEmpty();
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void canGenerateDetectorProfile() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    when(conf.getTargetXMLReport()).thenReturn(new File(temporaryFolder, "findbugs-report.xml"));
+
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    File profileReport = conf.getTargetProfileReport();
+    assertThat(profileReport).exists();
+    List<String> lines = FileUtils.readLines(profileReport, StandardCharsets.UTF_8);
+    assertThat(lines.get(0)).isEqualTo("detector,plugin,totalMilliseconds,classesVisited,bugs");
+    assertThat(lines).hasSizeGreaterThan(1);
+    assertThat(lines.get(1).split(",")).hasSize(5);
+
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void canAnalyzeModulesConcurrently() throws Exception {
+    FindbugsConfiguration firstConf = mockConf();
+    when(firstConf.getTargetXMLReport()).thenReturn(new File(temporaryFolder, "first/findbugs-result.xml"));
+    FindbugsConfiguration secondConf = mockConf();
+    when(secondConf.getTargetXMLReport()).thenReturn(new File(temporaryFolder, "second/findbugs-result.xml"));
+    when(secondConf.getTargetProfileReport()).thenReturn(new File(temporaryFolder, "second/findbugs-profile.csv"));
+
+    Locale initialLocale = Locale.getDefault();
+    Locale.setDefault(Locale.FRENCH);
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      Future<AnalysisResult> first = executorService.submit(
+        () -> new FindbugsExecutor(firstConf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute());
+      Future<AnalysisResult> second = executorService.submit(
+        () -> new FindbugsExecutor(secondConf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute());
+
+      checkAnalysisResult(first.get());
+      checkAnalysisResult(second.get());
+      assertThat(second.get().getReportedBugs()).containsExactlyInAnyOrderElementsOf(first.get().getReportedBugs());
+      // The default locale of the JVM is not changed while the modules are analyzed
+      assertThat(Locale.getDefault()).isEqualTo(Locale.FRENCH);
+    } finally {
+      executorService.shutdownNow();
+      Locale.setDefault(initialLocale);
+    }
+  }
+
+  @Test
+  void canDisableDetectorsWithoutActiveRule() throws Exception {
+    pluginRegistry.loadPlugins(null);
+    FindbugsExecutor executor = new FindbugsExecutor(mockConf(), fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache);
+
+    // PREDICTABLE_RANDOM_SCALA is only active in the Scala repository
+    IncludeFilter includeFilter = new IncludeFilter(Arrays.asList("PREDICTABLE_RANDOM_SCALA"));
+    Set<String> disabledDetectors = executor.selectDisabledDetectors(Collections.emptyList(), includeFilter).stream()
+      .map(DetectorFactory::getShortName)
+      .collect(Collectors.toSet());
+
+    // Only reports core bug patterns
+    assertThat(disabledDetectors).contains("FindDeadLocalStores");
+    // Reports PREDICTABLE_RANDOM_SCALA, active in the Scala repository
+    assertThat(disabledDetectors).doesNotContain("PredictableRandomDetector");
+    // Does not report any bug pattern, the information it collects is used by other detectors
+    assertThat(disabledDetectors).doesNotContain("FieldItemSummary");
+  }
+
   @Test
   void canGenerateXMLReportWithCustomConfidence() throws Exception {
     FindbugsConfiguration conf = mockConf();
@@ -97,7 +351,7 @@ class FindbugsExecutorTest {
     when(conf.getTargetXMLReport()).thenReturn(reportFile);
     when(conf.getConfidenceLevel()).thenReturn("low");
 
-    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty).execute();
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
 
     assertThat(reportFile).exists();
     String report = FileUtils.readFileToString(reportFile, StandardCharsets.UTF_8);
@@ -111,11 +365,129 @@ class FindbugsExecutorTest {
     checkAnalysisResult(analysisResult);
   }
 
+  @Test
+  void canAnalyzeWithoutXMLReport() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    File reportFile = new File(temporaryFolder, "findbugs-report.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    AnalysisResult xmlAnalysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+    FileUtils.delete(reportFile);
+
+    when(conf.isXmlReportEnabled()).thenReturn(false);
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    assertThat(reportFile).doesNotExist();
+    assertThat(analysisResult.getReportedBugs())
+    .isNotEmpty()
+    .containsExactlyInAnyOrderElementsOf(xmlAnalysisResult.getReportedBugs());
+
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void canAnalyzeWithSeveralEngines() throws Exception {
+    // Put the classes in different directories so they are split between two shards
+    File classFile = new File(temporaryFolder, "a/Hello.class");
+    File innerClassFile = new File(temporaryFolder, "b/Hello$1.class");
+    FileUtils.copyFile(new File("test-resources/classes/Hello.class"), classFile);
+    FileUtils.copyFile(new File("test-resources/classes/Hello$1.class"), innerClassFile);
+
+    FindbugsConfiguration conf = mockConf();
+    doAnswer(invocation -> {
+      Project project = invocation.getArgument(0);
+      project.addFile(classFile.getCanonicalPath());
+      project.addFile(innerClassFile.getCanonicalPath());
+      project.setCurrentWorkingDirectory(new File("test-resources"));
+      
+      return null;
+    }).when(conf).initializeFindbugsProject(any());
+    File reportFile = new File(temporaryFolder, "findbugs-report.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    when(conf.getParallelism()).thenReturn(2);
+
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    assertThat(analysisResult.getReportedBugs()).isNotEmpty();
+    assertThat(FileUtils.readFileToString(reportFile, StandardCharsets.UTF_8))
+    .as("Report should contain the merged bug instances").contains("<BugInstance")
+    .as("Report should be generated with messages").contains("<Message>");
+
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void canAnalyzeInSeparateJvm() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    File reportFile = new File(temporaryFolder, "findbugs-report.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    when(conf.isForkAnalysis()).thenReturn(true);
+    when(conf.getForkJvmArgs()).thenReturn(Arrays.asList("-Xmx256m"));
+
+    AnalysisResult analysisResult;
+    try (MockedConstruction<FindBugs2> engines = mockConstruction(FindBugs2.class)) {
+      analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+      assertThat(engines.constructed()).as("No engine should be built in the scanner JVM").isEmpty();
+    }
+
+    assertThat(analysisResult.getReportedBugs()).isNotEmpty();
+    assertThat(FileUtils.readFileToString(reportFile, StandardCharsets.UTF_8))
+    .as("Report should contain bug instance").contains("<BugInstance")
+    .as("Report should be generated with messages").contains("<Message>");
+    assertThat(new File(temporaryFolder, "findbugs-worker")).isEmptyDirectory();
+
+    checkAnalysisResult(analysisResult);
+  }
+
+  @Test
+  void shouldReportPartialResultsAfterTimeout() throws Exception {
+    FindbugsConfiguration conf = mockConf();
+    File reportFile = new File(temporaryFolder, "findbugs-report.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    when(conf.getTimeout()).thenReturn(1L);
+    when(conf.isPartialResultsOnTimeout()).thenReturn(true);
+
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    assertThat(analysisResult).isNotNull();
+    assertThat(reportFile).exists();
+    verify(analysisWarnings).addUnique(contains("classes were not analyzed"));
+  }
+
+  @Test
+  void shouldReportPartialResultsAfterTimeoutWithSeveralEngines() throws Exception {
+    File classFile = new File(temporaryFolder, "a/Hello.class");
+    File innerClassFile = new File(temporaryFolder, "b/Hello$1.class");
+    FileUtils.copyFile(new File("test-resources/classes/Hello.class"), classFile);
+    FileUtils.copyFile(new File("test-resources/classes/Hello$1.class"), innerClassFile);
+
+    FindbugsConfiguration conf = mockConf();
+    doAnswer(invocation -> {
+      Project project = invocation.getArgument(0);
+      project.addFile(classFile.getCanonicalPath());
+      project.addFile(innerClassFile.getCanonicalPath());
+      project.setCurrentWorkingDirectory(new File("test-resources"));
+      
+      return null;
+    }).when(conf).initializeFindbugsProject(any());
+    File reportFile = new File(temporaryFolder, "findbugs-report.xml");
+    when(conf.getTargetXMLReport()).thenReturn(reportFile);
+    when(conf.getParallelism()).thenReturn(2);
+    when(conf.getTimeout()).thenReturn(1L);
+    when(conf.isPartialResultsOnTimeout()).thenReturn(true);
+
+    AnalysisResult analysisResult = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache).execute();
+
+    assertThat(analysisResult).isNotNull();
+    assertThat(reportFile).exists();
+    verify(analysisWarnings).addUnique(contains("classes were not analyzed"));
+  }
+
   public void shouldTerminateAfterTimeout() throws Exception {
     FindbugsConfiguration conf = mockConf();
     when(conf.getTimeout()).thenReturn(1L);
 
-    FindbugsExecutor executor = new FindbugsExecutor(conf, fsEmpty, configEmpty);
+    FindbugsExecutor executor = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache);
     assertThrows(IllegalStateException.class, () -> {
       executor.execute();
     });
@@ -126,9 +498,9 @@ class FindbugsExecutorTest {
     when(fs.baseDir()).thenReturn(new File("."));
     SimpleConfiguration configuration = new SimpleConfiguration();
     //settings.setProperty(CoreProperties.CORE_VIOLATION_LOCALE_PROPERTY, Locale.getDefault().getDisplayName());
-    FindbugsConfiguration conf = new FindbugsConfiguration(fs, configuration, null, null);
+    FindbugsConfiguration conf = new FindbugsConfiguration(fs, configuration, null, null, null, null);
     
-    FindbugsExecutor executor = new FindbugsExecutor(conf, fsEmpty, configEmpty);
+    FindbugsExecutor executor = new FindbugsExecutor(conf, fsEmpty, configEmpty, sensorContext, pluginRegistry, analysisWarnings, auxClasspathCache);
     assertThrows(IllegalStateException.class, () -> {
       executor.execute();
     });
@@ -144,13 +516,34 @@ class FindbugsExecutorTest {
       
       return null;
     }).when(conf).initializeFindbugsProject(any());
-    when(conf.saveIncludeConfigXml()).thenReturn(new File("test-resources/findbugs-include.xml"));
+    when(conf.getIncludeFilter()).thenReturn(readIncludeFilter(new File("test-resources/findbugs-include.xml")));
     when(conf.getExcludesFilters()).thenReturn(Arrays.asList(new File("test-resources/findbugs-exclude.xml"), new File("test-resources/fake-file.xml")));
     when(conf.getEffort()).thenReturn("default");
     when(conf.getTimeout()).thenReturn(FindbugsConstants.TIMEOUT_DEFAULT_VALUE);
+    when(conf.isXmlReportEnabled()).thenReturn(true);
+    when(conf.getTargetProfileReport()).thenReturn(new File(temporaryFolder, "findbugs-profile.csv"));
     return conf;
   }
 
+  private static IncludeFilter readIncludeFilter(File file) throws IOException {
+    List<String> bugTypes = new ArrayList<>();
+    Matcher matcher = Pattern.compile("pattern=\"([^\"]+)\"").matcher(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+    while (matcher.find()) {
+      bugTypes.add(matcher.group(1));
+    }
+    return new IncludeFilter(bugTypes);
+  }
+
+  private static List<ReportedBug> filterActiveBugs(Collection<ReportedBug> reportedBugs, ActiveRules activeRules) {
+    List<ReportedBug> activeBugs = new ArrayList<>();
+    for (ReportedBug reportedBug : reportedBugs) {
+      if (activeRules.findByInternalKey(FindbugsRulesDefinition.REPOSITORY_KEY, reportedBug.getType()) != null) {
+        activeBugs.add(reportedBug);
+      }
+    }
+    return activeBugs;
+  }
+
   /**
    * Smoke test checking that no errors where reported.
    * This might happen when upgrading to a new version of SpotBugs or plugins and would most likely mean that there's a regression in the new version
@@ -0,0 +1,133 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.utils.TempFolder;
+
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.Plugin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FindbugsPluginRegistryTest {
+
+  @TempDir
+  public File temporaryFolder;
+
+  private File pluginsDir;
+  private File jarCacheDir;
+  private TempFolder tempFolder;
+  private FindbugsPluginRegistry registry;
+
+  @BeforeEach
+  public void setUp() {
+    pluginsDir = new File(temporaryFolder, "findbugs");
+    tempFolder = mock(TempFolder.class);
+    when(tempFolder.newDir(any())).thenReturn(pluginsDir);
+    jarCacheDir = new File(temporaryFolder, "jar-cache");
+    registry = new FindbugsPluginRegistry(new ExtractedJarCache(tempFolder));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    registry.stop();
+  }
+
+  @Test
+  void should_extract_plugins_in_cache() throws IOException {
+    registry.loadPlugins(jarCacheDir);
+
+    try (Stream<Path> files = Files.walk(jarCacheDir.toPath())) {
+      assertThat(files.filter(Files::isRegularFile).map(path -> path.getFileName().toString()))
+        .containsExactlyInAnyOrder("sb-contrib.jar", "sb-contrib.jar.sha256", "findsecbugs-plugin.jar", "findsecbugs-plugin.jar.sha256");
+    }
+    verify(tempFolder, never()).newDir(any());
+  }
+
+  @Test
+  void should_extract_plugins_in_temp_folder_without_cache() {
+    registry.loadPlugins(null);
+
+    assertThat(new File(pluginsDir, "sb-contrib.jar")).isFile();
+    assertThat(new File(pluginsDir, "findsecbugs-plugin.jar")).isFile();
+  }
+
+  @Test
+  void should_load_plugins_once() {
+    registry.loadPlugins(null);
+    DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+
+    registry.loadPlugins(null);
+
+    verify(tempFolder, times(1)).newDir(any());
+    assertThat(DetectorFactoryCollection.instance()).isSameAs(detectorFactoryCollection);
+  }
+
+  @Test
+  void should_restore_the_default_locale() {
+    Locale initialLocale = Locale.getDefault();
+    Locale.setDefault(Locale.FRENCH);
+    try {
+      registry.loadPlugins(jarCacheDir);
+
+      assertThat(Locale.getDefault()).isEqualTo(Locale.FRENCH);
+    } finally {
+      Locale.setDefault(initialLocale);
+    }
+  }
+
+  @Test
+  void should_exclude_plugins_not_used() {
+    registry.loadPlugins(jarCacheDir);
+
+    assertThat(registry.getExcludedPlugins(true, true)).isEmpty();
+    assertThat(registry.getExcludedPlugins(false, true)).extracting(Plugin::getPluginId).containsExactly("com.mebigfatguy.fbcontrib");
+    assertThat(registry.getExcludedPlugins(true, false)).extracting(Plugin::getPluginId).containsExactly("com.h3xstream.findsecbugs");
+    assertThat(registry.getExcludedPlugins(false, false)).hasSize(2);
+  }
+
+  @Test
+  void should_unload_plugins_on_stop() {
+    registry.loadPlugins(jarCacheDir);
+    int pluginCount = Plugin.getAllPlugins().size();
+
+    registry.stop();
+
+    assertThat(Plugin.getAllPlugins()).hasSize(pluginCount - 2);
+    assertThat(registry.getExcludedPlugins(false, false)).isEmpty();
+  }
+}
@@ -33,9 +33,9 @@ class FindbugsPluginTest {
 
   @ParameterizedTest
   @CsvSource({
-    "11.3,26",
+    "11.3,41",
     // We disable the profile exporter when the plugin API version is >= 11.4 (since 2025.3 commercial editions)
-    "11.4,25"
+    "11.4,40"
   })
   void testGetExtensions(String version, int expectedExtensionsCount) {
     SonarRuntime runtime = mock(SonarRuntime.class);
@@ -21,6 +21,7 @@ package org.sonar.plugins.findbugs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -34,7 +35,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -53,6 +56,7 @@ import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.plugins.findbugs.classpath.ClasspathLocator;
+import org.sonar.plugins.findbugs.configuration.SimpleConfiguration;
 import org.sonar.plugins.findbugs.resource.ByteCodeResourceLocator;
 import org.sonar.plugins.findbugs.resource.SmapParser.FileInfo;
 import org.sonar.plugins.findbugs.resource.SmapParser.SmapLocation;
@@ -74,6 +78,8 @@ class FindbugsSensorTest extends FindbugsTests {
   private SensorContext sensorContext;
   private FindbugsExecutor executor;
   private ClasspathLocator classpathLocator;
+  private SimpleConfiguration configuration;
+  private FindbugsConfiguration findbugsConfiguration;
 
   @BeforeEach
   public void setUp() throws IOException {
@@ -81,6 +87,8 @@ class FindbugsSensorTest extends FindbugsTests {
     byteCodeResourceLocator = mock(ByteCodeResourceLocator.class);
     executor = mock(FindbugsExecutor.class);
     classpathLocator = mock(ClasspathLocator.class);
+    configuration = new SimpleConfiguration();
+    when(sensorContext.config()).thenReturn(configuration);
     
     File baseDir = new File(temp, "findbugs");
 
@@ -95,6 +103,8 @@ class FindbugsSensorTest extends FindbugsTests {
     when(fs.workDir()).thenReturn(new File(temp, "workdir"));
     when(fs.predicates()).thenReturn(filePredicates);
 
+    findbugsConfiguration = new FindbugsConfiguration(fs, configuration, null, classpathLocator, null, null);
+
     InputFile dummyFile = mock(InputFile.class);
     when(dummyFile.relativePath()).thenReturn("src/main/java/com/helloworld/DummyFile.java");
     //Will make sure that the lookup on the filesystem will always find a file.
@@ -136,7 +146,7 @@ class FindbugsSensorTest extends FindbugsTests {
     when(executor.execute(false, false)).thenReturn(new AnalysisResult(bugInstance));
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -153,7 +163,7 @@ class FindbugsSensorTest extends FindbugsTests {
     when(fs.inputFiles(any(FilePredicate.class))).thenReturn(new ArrayList<InputFile>());
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -169,7 +179,7 @@ class FindbugsSensorTest extends FindbugsTests {
     when(executor.execute(true, false)).thenReturn(new AnalysisResult(bugInstance));
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFbContribRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -185,7 +195,7 @@ class FindbugsSensorTest extends FindbugsTests {
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindSecBugsRules();
 
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     sensor.execute(sensorContext);
 
     verify(executor).execute(false, true);
@@ -199,7 +209,7 @@ class FindbugsSensorTest extends FindbugsTests {
     when(executor.execute(false, false)).thenReturn(new AnalysisResult(bugInstance));
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -211,7 +221,7 @@ class FindbugsSensorTest extends FindbugsTests {
   void should_not_execute_findbugs_if_no_active() throws Exception {
 
     ActiveRules activeRules = FakeActiveRules.createWithNoRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -230,7 +240,7 @@ class FindbugsSensorTest extends FindbugsTests {
     when(fs.languages()).thenReturn(languages);
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindSecBugsJspRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -249,7 +259,7 @@ class FindbugsSensorTest extends FindbugsTests {
     when(executor.execute(false, true)).thenReturn(new AnalysisResult());
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindSecBugsJspRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -262,13 +272,12 @@ class FindbugsSensorTest extends FindbugsTests {
     BugInstance bugInstance = getBugInstance("AM_CREATES_EMPTY_ZIP_FILE_ENTRY", 6, true);
     when(executor.execute(false, false)).thenReturn(new AnalysisResult(bugInstance));
     
-    // return a class file that does not have SMAP (doesn't exist actually)
-    when(byteCodeResourceLocator.findClassFileByClassName("org.sonar.commons.ZipUtils", this.classpathLocator)).thenReturn("");
+    // the class file is not in the classpath directories
     // don't return a source file: the input file is not in the file system even if SpotBugs found an issue in a class file
     when(byteCodeResourceLocator.findSourceFile("org/sonar/commons/org/sonar/commons/ZipUtils.java", fs)).thenReturn(null);
     
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -281,23 +290,45 @@ class FindbugsSensorTest extends FindbugsTests {
     BugInstance bugInstance = getBugInstance("AM_CREATES_EMPTY_ZIP_FILE_ENTRY", 6, true);
     when(executor.execute(false, false)).thenReturn(new AnalysisResult(bugInstance));
     
-    String classFileName = "org/sonar/commons/ZipUtils.class";
-    
-    when(byteCodeResourceLocator.findClassFileByClassName("org.sonar.commons.ZipUtils", this.classpathLocator)).thenReturn(classFileName);
+    File classesDir = new File(temp, "classes");
+    File classFile = new File(classesDir, "org/sonar/commons/ZipUtils.class");
+    FileUtils.touch(classFile);
+    when(classpathLocator.classpath()).thenReturn(Collections.singletonList(classesDir));
     
     // Return a valid SMAP location
     FileInfo fileInfo = new FileInfo("ZipUtils", "org/sonar/commons/org/sonar/commons/ZipUtils.java");
     SmapLocation smapLocation = new SmapLocation(fileInfo, 6, true);
-    when(byteCodeResourceLocator.extractSmapLocation("org.sonar.commons.ZipUtils", 6, new File(classFileName))).thenReturn(smapLocation);
+    when(byteCodeResourceLocator.extractSmapLocation("org.sonar.commons.ZipUtils", 6, classFile.getCanonicalFile())).thenReturn(smapLocation);
     
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     sensor.execute(sensorContext);
 
     verify(executor).execute(false, false);
     verify(sensorContext, times(1)).newIssue();
   }
 
+  @Test
+  void should_map_issues_while_findbugs_is_running() throws Exception {
+    configuration.setProperty(FindbugsConstants.ISSUE_MAPPING_THREADS_PROPERTY, 4);
+
+    BugInstance bugInstance = getBugInstance("AM_CREATES_EMPTY_ZIP_FILE_ENTRY", 6, true);
+    when(executor.execute(eq(false), eq(false), any())).thenAnswer(invocation -> {
+      Consumer<ReportedBug> bugConsumer = invocation.getArgument(2);
+      for (int i = 0; i < 50; i++) {
+        bugConsumer.accept(new ReportedBug(bugInstance));
+      }
+      return Collections.emptyList();
+    });
+
+    ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
+    sensor.execute(sensorContext);
+
+    verify(executor, never()).execute(false, false);
+    verify(sensorContext, times(50)).newIssue();
+  }
+
   private BugInstance getBugInstance(String name, int line, boolean mockFindSourceFile) {
     BugInstance bugInstance = new BugInstance(name, 2);
     String className = "org.sonar.commons.ZipUtils";
@@ -330,7 +361,7 @@ class FindbugsSensorTest extends FindbugsTests {
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
     when(executor.execute(false, false)).thenReturn(new AnalysisResult(bugInstance));
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     sensor.execute(sensorContext);
 
     verify(sensorContext, never()).newIssue();
@@ -339,7 +370,7 @@ class FindbugsSensorTest extends FindbugsTests {
   @Test
   void describe() {
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     SensorDescriptor descriptor = mock(SensorDescriptor.class);
     
     sensor.describe(descriptor);
@@ -360,7 +391,7 @@ class FindbugsSensorTest extends FindbugsTests {
 
     ActiveRules activeRules = FakeActiveRules.createWithOnlyFindbugsRules();
     when(executor.execute(false, false)).thenReturn(analysisResult);
-    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, classpathLocator, fs, byteCodeResourceLocator);
+    FindbugsSensor sensor = new FindbugsSensor(activeRules, sensorContext, executor, findbugsConfiguration, classpathLocator, fs, byteCodeResourceLocator);
     
     sensor.execute(sensorContext);
 
@@ -27,6 +27,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -67,6 +68,43 @@ class FindbugsXmlReportParserTest {
     assertThat(sourceLine.getClassName()).isEqualTo("org.sonar.commons.ZipUtils");
   }
 
+  @Test
+  void testReadReportWithTypeFilter() {
+    File findbugsXmlReport = getFile("/org/sonar/plugins/findbugs/findbugsReport.xml");
+    List<FindbugsXmlReportParser.XmlBugInstance> filteredViolations = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+
+    new FindbugsXmlReportParser(findbugsXmlReport).readReport("SIC_INNER_SHOULD_BE_STATIC_ANON"::equals, filteredViolations::add, errors::add);
+
+    assertThat(filteredViolations).hasSize(1);
+    FindbugsXmlReportParser.XmlBugInstance fbViolation = filteredViolations.get(0);
+    assertThat(fbViolation.getType()).isEqualTo("SIC_INNER_SHOULD_BE_STATIC_ANON");
+    assertThat(fbViolation.getPrimarySourceLine().getSourcePath()).isEqualTo("org/sonar/commons/resources/MeasuresDao.java");
+    assertThat(errors).isEmpty();
+  }
+
+  @Test
+  void testReadReportWithoutMessages() {
+    File findbugsXmlReport = getFile("/org/sonar/plugins/findbugs/findbugsReportWithoutMessages.xml");
+
+    List<FindbugsXmlReportParser.XmlBugInstance> bugInstances = new FindbugsXmlReportParser(findbugsXmlReport).getBugInstances();
+
+    assertThat(bugInstances).hasSize(2);
+    // Class level bug, the only source line is the one of the class
+    FindbugsXmlReportParser.XmlBugInstance classViolation = bugInstances.get(0);
+    assertThat(classViolation.getLongMessage()).isEmpty();
+    FindbugsXmlReportParser.XmlSourceLineAnnotation sourceLine = classViolation.getPrimarySourceLine();
+    assertThat(sourceLine.getClassName()).isEqualTo("org.sonar.commons.resources.MeasuresDao$1");
+    assertThat(sourceLine.getSourcePath()).isEqualTo("org/sonar/commons/resources/MeasuresDao.java");
+    assertThat(sourceLine.getStart()).isEqualTo(56);
+
+    // Method level bug, the source line of the method comes before the one of the class
+    sourceLine = bugInstances.get(1).getPrimarySourceLine();
+    assertThat(sourceLine.getClassName()).isEqualTo("org.sonar.commons.ZipUtils");
+    assertThat(sourceLine.getStart()).isEqualTo(103);
+    assertThat(sourceLine.getEnd()).isEqualTo(124);
+  }
+
   @Test
   void testGetSonarJavaFileKey() {
     FindbugsXmlReportParser.XmlSourceLineAnnotation sourceLine = new FindbugsXmlReportParser.XmlSourceLineAnnotation();
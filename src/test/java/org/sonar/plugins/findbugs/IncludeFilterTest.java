@@ -0,0 +1,105 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.rule.RuleKey;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.filter.Filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IncludeFilterTest {
+
+  @TempDir
+  public File temporaryFolder;
+
+  @Test
+  void should_match_bug_types() {
+    IncludeFilter includeFilter = new IncludeFilter(Arrays.asList("NP_NULL_ON_SOME_PATH", "DM_GC"));
+
+    assertThat(includeFilter.match(new BugInstance("DM_GC", Priorities.NORMAL_PRIORITY))).isTrue();
+    assertThat(includeFilter.match(new BugInstance("DM_EXIT", Priorities.NORMAL_PRIORITY))).isFalse();
+  }
+
+  @Test
+  void should_have_same_fingerprint_for_same_bug_types() {
+    IncludeFilter includeFilter = new IncludeFilter(Arrays.asList("NP_NULL_ON_SOME_PATH", "DM_GC"));
+
+    assertThat(new IncludeFilter(Arrays.asList("DM_GC", "NP_NULL_ON_SOME_PATH", "DM_GC")).getFingerprint()).isEqualTo(includeFilter.getFingerprint());
+    assertThat(new IncludeFilter(Arrays.asList("DM_GC")).getFingerprint()).isNotEqualTo(includeFilter.getFingerprint());
+  }
+
+  @Test
+  void should_write_filter_file_read_by_spotbugs() throws IOException {
+    IncludeFilter includeFilter = new IncludeFilter(Arrays.asList("NP_NULL_ON_SOME_PATH", "DM_GC"));
+    File file = new File(temporaryFolder, "include.xml");
+
+    includeFilter.writeTo(file);
+
+    Filter filter = new Filter(file.getAbsolutePath());
+    assertThat(filter.getChildren()).hasSize(2);
+    assertThat(filter.match(new BugInstance("DM_GC", Priorities.NORMAL_PRIORITY))).isTrue();
+    assertThat(filter.match(new BugInstance("DM_EXIT", Priorities.NORMAL_PRIORITY))).isFalse();
+  }
+
+  @Test
+  void should_share_filter_of_same_active_rules() {
+    IncludeFilterCache includeFilterCache = new IncludeFilterCache();
+    ActiveRules activeRules = mockActiveRules("findbugs:DM_GC", "fb-contrib:ISB_INEFFICIENT_STRING_BUFFERING", "java:S1234");
+
+    IncludeFilter includeFilter = includeFilterCache.getIncludeFilter(activeRules);
+
+    assertThat(includeFilter.getBugTypes()).containsExactly("DM_GC", "ISB_INEFFICIENT_STRING_BUFFERING");
+    assertThat(includeFilter.getFingerprint()).isEqualTo(new IncludeFilter(includeFilter.getBugTypes()).getFingerprint());
+    assertThat(includeFilterCache.getIncludeFilter(activeRules)).isSameAs(includeFilter);
+    // Other instances of the same active rules, in another order
+    assertThat(includeFilterCache.getIncludeFilter(mockActiveRules("java:S1234", "fb-contrib:ISB_INEFFICIENT_STRING_BUFFERING", "findbugs:DM_GC")))
+      .isSameAs(includeFilter);
+    assertThat(includeFilterCache.getIncludeFilter(mockActiveRules("findbugs:DM_GC")).getBugTypes()).containsExactly("DM_GC");
+    assertThat(includeFilterCache.getIncludeFilter(mockActiveRules()).getBugTypes()).isEmpty();
+  }
+
+  private static ActiveRules mockActiveRules(String... ruleKeys) {
+    List<ActiveRule> rules = new ArrayList<>();
+    for (String ruleKey : ruleKeys) {
+      ActiveRule rule = mock(ActiveRule.class);
+      when(rule.ruleKey()).thenReturn(RuleKey.parse(ruleKey));
+      when(rule.internalKey()).thenReturn(RuleKey.parse(ruleKey).rule());
+      rules.add(rule);
+    }
+    ActiveRules activeRules = mock(ActiveRules.class);
+    when(activeRules.findAll()).thenReturn(rules);
+    return activeRules;
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+
+import edu.umd.cs.findbugs.Project;
+
+class IncrementalAnalysisTest {
+
+  private static final String CACHE_KEY = IncrementalAnalysis.CACHE_KEY_PREFIX + "module";
+
+  @TempDir
+  public File temp;
+
+  private File helloClass;
+  private File helloInnerClass;
+  private Map<String, byte[]> cache;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    helloClass = new File(temp, "Hello.class");
+    helloInnerClass = new File(temp, "Hello$1.class");
+    FileUtils.copyFile(new File("test-resources/classes/Hello.class"), helloClass);
+    FileUtils.copyFile(new File("test-resources/classes/Hello$1.class"), helloInnerClass);
+    cache = new HashMap<>();
+  }
+
+  @Test
+  void should_analyze_all_classes_without_previous_analysis() throws IOException {
+    IncrementalAnalysis incrementalAnalysis = analyze("fingerprint");
+
+    assertThat(incrementalAnalysis.getAnalyzedClasses()).containsOnly("Hello", "Hello$1");
+    assertThat(cache).containsKey(CACHE_KEY);
+  }
+
+  @Test
+  void should_reuse_bugs_of_unchanged_classes() throws IOException {
+    analyze("fingerprint");
+
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+
+      assertThat(incrementalAnalysis.selectClassesToAnalyze(project)).isZero();
+      assertThat(project.getFileCount()).isZero();
+      assertThat(project.getAuxClasspathEntryList()).contains(temp.getPath() + File.separator);
+
+      Collection<ReportedBug> bugs = incrementalAnalysis.mergeWithCachedBugs(Collections.emptyList());
+      assertThat(bugs).extracting(ReportedBug::getType).containsOnly("HELLO_BUG");
+      assertThat(bugs).extracting(ReportedBug::getMessage).containsOnly("Bug in Hello");
+    }
+  }
+
+  @Test
+  void should_replay_bugs_of_classes_without_class_file_with_their_outer_class() throws IOException {
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+      incrementalAnalysis.selectClassesToAnalyze(project);
+
+      ReportedBug bug = new ReportedBug("SYNTHETIC_BUG", "Bug in a synthetic class", "Hello$Synthetic", 7, "Hello.java", "Hello");
+      assertThat(incrementalAnalysis.mergeWithCachedBugs(Arrays.asList(bug))).containsExactly(bug);
+      incrementalAnalysis.save(writeCache());
+    }
+
+    // Nothing changed, the bug is replayed from the cache
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+
+      assertThat(incrementalAnalysis.selectClassesToAnalyze(project)).isZero();
+      assertThat(incrementalAnalysis.mergeWithCachedBugs(Collections.emptyList())).extracting(ReportedBug::getType).containsExactly("SYNTHETIC_BUG");
+    }
+  }
+
+  @Test
+  void should_not_save_the_cache_when_a_bug_does_not_belong_to_any_class() throws IOException {
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+      incrementalAnalysis.selectClassesToAnalyze(project);
+
+      ReportedBug bug = new ReportedBug("OTHER_BUG", "Bug in another class", "Other", 3, "Other.java", "Other");
+      assertThat(incrementalAnalysis.mergeWithCachedBugs(Arrays.asList(bug))).containsExactly(bug);
+      incrementalAnalysis.save(writeCache());
+    }
+
+    assertThat(cache).doesNotContainKey(CACHE_KEY);
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+
+      assertThat(incrementalAnalysis.selectClassesToAnalyze(project)).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void should_analyze_changed_classes_and_their_dependents() throws IOException {
+    analyze("fingerprint");
+
+    // Trailing bytes are ignored by the class file parsers but they change the hash
+    Files.write(helloInnerClass.toPath(), new byte[] {0}, StandardOpenOption.APPEND);
+
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+
+      assertThat(incrementalAnalysis.selectClassesToAnalyze(project)).isEqualTo(2);
+      // Hello references Hello$1 so it must also be analyzed
+      assertThat(incrementalAnalysis.getAnalyzedClasses()).containsOnly("Hello", "Hello$1");
+    }
+  }
+
+  @Test
+  void should_analyze_all_classes_when_settings_changed() throws IOException {
+    analyze("fingerprint");
+
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "other fingerprint", 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+
+      assertThat(incrementalAnalysis.selectClassesToAnalyze(project)).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void should_analyze_dependents_up_to_configured_depth() throws IOException {
+    // Third extends Second which extends First
+    File first = writeClass("First", "java/lang/Object");
+    File second = writeClass("Second", "First");
+    File third = writeClass("Third", "Second");
+
+    assertThat(analyzeChain(first, second, third, 0)).containsOnly("First");
+    assertThat(analyzeChain(first, second, third, 1)).containsOnly("First", "Second");
+    assertThat(analyzeChain(first, second, third, 2)).containsOnly("First", "Second", "Third");
+    assertThat(analyzeChain(first, second, third, -1)).containsOnly("First", "Second", "Third");
+  }
+
+  private Set<String> analyzeChain(File first, File second, File third, int dependentsDepth) throws IOException {
+    cache.clear();
+    Files.write(first.toPath(), writeClassBytes("First", "java/lang/Object"));
+    try (Project project = new Project()) {
+      project.addFile(first.getPath());
+      project.addFile(second.getPath());
+      project.addFile(third.getPath());
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", dependentsDepth);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+      incrementalAnalysis.selectClassesToAnalyze(project);
+      incrementalAnalysis.mergeWithCachedBugs(Collections.emptyList());
+      incrementalAnalysis.save(writeCache());
+    }
+
+    Files.write(first.toPath(), new byte[] {0}, StandardOpenOption.APPEND);
+
+    try (Project project = new Project()) {
+      project.addFile(first.getPath());
+      project.addFile(second.getPath());
+      project.addFile(third.getPath());
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, "fingerprint", dependentsDepth);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+
+      assertThat(incrementalAnalysis.selectClassesToAnalyze(project)).isEqualTo(incrementalAnalysis.getAnalyzedClasses().size());
+      return incrementalAnalysis.getAnalyzedClasses();
+    }
+  }
+
+  private File writeClass(String name, String superName) throws IOException {
+    File classFile = new File(temp, name + ".class");
+    Files.write(classFile.toPath(), writeClassBytes(name, superName));
+    return classFile;
+  }
+
+  private static byte[] writeClassBytes(String name, String superName) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private IncrementalAnalysis analyze(String fingerprint) throws IOException {
+    try (Project project = createProject()) {
+      IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(CACHE_KEY, fingerprint, 1);
+      incrementalAnalysis.loadPreviousEntries(readCache());
+      incrementalAnalysis.selectClassesToAnalyze(project);
+
+      ReportedBug bug = new ReportedBug("HELLO_BUG", "Bug in Hello", "Hello", 5, "Hello.java", "Hello");
+      incrementalAnalysis.mergeWithCachedBugs(Arrays.asList(bug));
+      incrementalAnalysis.save(writeCache());
+      return incrementalAnalysis;
+    }
+  }
+
+  private Project createProject() throws IOException {
+    Project project = new Project();
+    project.addFile(helloClass.getPath());
+    project.addFile(helloInnerClass.getPath());
+    return project;
+  }
+
+  private ReadCache readCache() {
+    ReadCache readCache = mock(ReadCache.class);
+    when(readCache.contains(anyString())).thenAnswer(invocation -> cache.containsKey(invocation.getArgument(0)));
+    when(readCache.read(anyString())).thenAnswer(invocation -> new ByteArrayInputStream(cache.get(invocation.getArgument(0))));
+    return readCache;
+  }
+
+  private WriteCache writeCache() {
+    WriteCache writeCache = mock(WriteCache.class);
+    doAnswer(invocation -> cache.put(invocation.getArgument(0), invocation.getArgument(1))).when(writeCache).write(anyString(), any(byte[].class));
+    return writeCache;
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import edu.umd.cs.findbugs.ClassScreener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OnlyAnalyzeFilterTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OnlyAnalyzeFilterTest.class);
+
+  @Test
+  void should_match_classes_packages_and_prefixes() {
+    OnlyAnalyzeFilter filter = OnlyAnalyzeFilter.parse("com.example.Test,org.sample.*,net.deep.-,Default");
+
+    assertThat(filter.matches("com.example.Test")).isTrue();
+    assertThat(filter.matches("com.example.Test$Inner")).isFalse();
+    assertThat(filter.matches("com.example.Other")).isFalse();
+    assertThat(filter.matches("org.sample.Any")).isTrue();
+    assertThat(filter.matches("org.sample.Any$1")).isTrue();
+    assertThat(filter.matches("org.sample.sub.Any")).isFalse();
+    assertThat(filter.matches("net.deep.Any")).isTrue();
+    assertThat(filter.matches("net.deep.sub.sub.Any")).isTrue();
+    assertThat(filter.matches("net.deeper.Any")).isFalse();
+    assertThat(filter.matches("Default")).isTrue();
+    assertThat(filter.matches("module-info")).isFalse();
+  }
+
+  @Test
+  void should_exclude_items_starting_with_exclamation_mark() {
+    OnlyAnalyzeFilter filter = OnlyAnalyzeFilter.parse("com.example.-,!com.example.generated.*,!com.example.Skipped");
+
+    assertThat(filter.matches("com.example.Test")).isTrue();
+    assertThat(filter.matches("com.example.generated.Test")).isFalse();
+    assertThat(filter.matches("com.example.generated.sub.Test")).isTrue();
+    assertThat(filter.matches("com.example.Skipped")).isFalse();
+
+    OnlyAnalyzeFilter onlyExclusions = OnlyAnalyzeFilter.parse("!com.example.-");
+    assertThat(onlyExclusions.matches("org.example.Test")).isTrue();
+    assertThat(onlyExclusions.matches("com.example.sub.Test")).isFalse();
+  }
+
+  @Test
+  void should_match_like_class_screener() {
+    Random random = new Random(42);
+    String onlyAnalyze = String.join(",", generateItems(random, 40));
+    OnlyAnalyzeFilter filter = OnlyAnalyzeFilter.parse(onlyAnalyze);
+    ClassScreener classScreener = createClassScreener(onlyAnalyze);
+
+    int matches = 0;
+    List<String> classNames = generateClassNames(random, 5000);
+    for (String className : classNames) {
+      boolean match = filter.matches(className);
+      assertThat(match).as(className).isEqualTo(classScreener.matches(toClassFile(className)));
+      matches += match ? 1 : 0;
+    }
+    assertThat(matches).isPositive().isLessThan(classNames.size());
+  }
+
+  /**
+   * Compare the time needed to filter a large set of class files with the filter and with the ClassScreener of SpotBugs.
+   * Run with -Dfindbugs.benchmark=true
+   */
+  @Test
+  @EnabledIfSystemProperty(named = "findbugs.benchmark", matches = "true")
+  void benchmark_against_class_screener() {
+    Random random = new Random(42);
+    String onlyAnalyze = String.join(",", generateItems(random, 5000));
+    List<String> classNames = generateClassNames(random, 50000);
+    List<String> classFiles = new ArrayList<>();
+    for (String className : classNames) {
+      classFiles.add(toClassFile(className));
+    }
+
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      ClassScreener classScreener = createClassScreener(onlyAnalyze);
+      int screenerMatches = 0;
+      for (String classFile : classFiles) {
+        screenerMatches += classScreener.matches(classFile) ? 1 : 0;
+      }
+      long screenerTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      OnlyAnalyzeFilter filter = OnlyAnalyzeFilter.parse(onlyAnalyze);
+      int filterMatches = 0;
+      for (String className : classNames) {
+        filterMatches += filter.matches(className) ? 1 : 0;
+      }
+      long filterTime = System.nanoTime() - start;
+
+      assertThat(filterMatches).isEqualTo(screenerMatches);
+      LOG.info("Round {}: ClassScreener {} ms, OnlyAnalyzeFilter {} ms ({} of {} classes matched)",
+        round, screenerTime / 1_000_000, filterTime / 1_000_000, filterMatches, classNames.size());
+    }
+  }
+
+  private static ClassScreener createClassScreener(String onlyAnalyze) {
+    // Same parsing as the SpotBugs -onlyAnalyze option
+    ClassScreener classScreener = new ClassScreener();
+    StringTokenizer tok = new StringTokenizer(onlyAnalyze, ",");
+    while (tok.hasMoreTokens()) {
+      String item = tok.nextToken();
+      if (item.endsWith(".-")) {
+        classScreener.addAllowedPrefix(item.substring(0, item.length() - 1));
+      } else if (item.endsWith(".*")) {
+        classScreener.addAllowedPackage(item.substring(0, item.length() - 1));
+      } else {
+        classScreener.addAllowedClass(item);
+      }
+    }
+    return classScreener;
+  }
+
+  private static String toClassFile(String className) {
+    return className.replace('.', '/') + ".class";
+  }
+
+  private static List<String> generateItems(Random random, int count) {
+    List<String> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      String packageName = generatePackageName(random);
+      switch (random.nextInt(4)) {
+        case 0:
+          items.add(packageName + ".-");
+          break;
+        case 1:
+          items.add(packageName + ".*");
+          break;
+        default:
+          items.add(packageName + ".C" + random.nextInt(10));
+          break;
+      }
+    }
+    return items;
+  }
+
+  private static List<String> generateClassNames(Random random, int count) {
+    List<String> classNames = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      String className = generatePackageName(random) + ".C" + random.nextInt(10);
+      classNames.add(random.nextInt(5) == 0 ? className + "$" + random.nextInt(3) : className);
+    }
+    return classNames;
+  }
+
+  private static String generatePackageName(Random random) {
+    // Few distinct names, so that the packages are shared and nested. The ClassScreener matches the items against any
+    // suffix of the path, the root packages have their own names so that they can only match from the root package.
+    StringBuilder packageName = new StringBuilder("r" + random.nextInt(8));
+    int depth = random.nextInt(4);
+    for (int i = 0; i < depth; i++) {
+      packageName.append(".p").append(random.nextInt(4));
+    }
+    return packageName.toString();
+  }
+}
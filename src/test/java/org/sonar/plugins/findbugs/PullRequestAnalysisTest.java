@@ -0,0 +1,147 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import edu.umd.cs.findbugs.Project;
+
+class PullRequestAnalysisTest {
+
+  @TempDir
+  public File temp;
+
+  private File helloClass;
+  private File helloInnerClass;
+  private File jspClass;
+  private File kotlinClass;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    helloClass = new File(temp, "Hello.class");
+    helloInnerClass = new File(temp, "Hello$1.class");
+    jspClass = new File(temp, "org/apache/jsp/test_jsp.class");
+    kotlinClass = new File(temp, "io/github/detekt/report/txt/TxtOutputReport.class");
+    FileUtils.copyFile(new File("test-resources/classes/Hello.class"), helloClass);
+    FileUtils.copyFile(new File("test-resources/classes/Hello$1.class"), helloInnerClass);
+    FileUtils.copyFile(new File("src/test/resources/jsp_classes/jetty936/test_jsp.clazz"), jspClass);
+    FileUtils.copyFile(new File("src/test/resources/kt_classes/TxtOutputReport.clazz"), kotlinClass);
+  }
+
+  @Test
+  void should_analyze_classes_compiled_from_changed_source_file() throws IOException {
+    try (Project project = createProject()) {
+      PullRequestAnalysis pullRequestAnalysis = new PullRequestAnalysis(Collections.singletonList("/project/src/main/java/Hello.java"));
+
+      assertThat(pullRequestAnalysis.selectClassesToAnalyze(project)).isEqualTo(2);
+      assertThat(project.getFileList()).containsOnly(helloClass.getPath(), helloInnerClass.getPath());
+      assertThat(project.getAuxClasspathEntryList()).contains(temp.getPath() + File.separator);
+    }
+  }
+
+  @Test
+  void should_skip_all_classes_without_changed_source_file() throws IOException {
+    try (Project project = createProject()) {
+      PullRequestAnalysis pullRequestAnalysis = new PullRequestAnalysis(Arrays.asList("/project/README.md", "/project/src/main/java/Other.java"));
+
+      assertThat(pullRequestAnalysis.selectClassesToAnalyze(project)).isZero();
+      assertThat(project.getFileList()).isEmpty();
+    }
+  }
+
+  @Test
+  void should_analyze_jsp_classes_including_changed_file() throws IOException {
+    try (Project project = createProject()) {
+      // index.jsp is included by test.jsp, it is only listed in the SMAP of the class
+      PullRequestAnalysis pullRequestAnalysis = new PullRequestAnalysis(Collections.singletonList("/project/src/main/webapp/index.jsp"));
+
+      assertThat(pullRequestAnalysis.selectClassesToAnalyze(project)).isEqualTo(1);
+      assertThat(project.getFileList()).containsOnly(jspClass.getPath());
+    }
+  }
+
+  @Test
+  void should_analyze_kotlin_classes_outside_of_package_directory() throws IOException {
+    try (Project project = createProject()) {
+      PullRequestAnalysis pullRequestAnalysis = new PullRequestAnalysis(Collections.singletonList("/project/src/main/kotlin/TxtOutputReport.kt"));
+
+      assertThat(pullRequestAnalysis.selectClassesToAnalyze(project)).isEqualTo(1);
+      assertThat(project.getFileList()).containsOnly(kotlinClass.getPath());
+    }
+  }
+
+  @Test
+  void should_not_match_source_file_of_other_package() throws IOException {
+    try (Project project = createProject()) {
+      PullRequestAnalysis pullRequestAnalysis = new PullRequestAnalysis(Collections.singletonList("/project/src/main/java/com/example/test_jsp.java"));
+
+      assertThat(pullRequestAnalysis.selectClassesToAnalyze(project)).isZero();
+    }
+  }
+
+  @Test
+  void should_analyze_classes_without_source_file() throws IOException {
+    File noDebugClass = new File(temp, "app/NoDebug.class");
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "app/NoDebug", null, "java/lang/Object", null);
+    classWriter.visitEnd();
+    FileUtils.writeByteArrayToFile(noDebugClass, classWriter.toByteArray());
+
+    try (Project project = createProject()) {
+      project.addFile(noDebugClass.getPath());
+      PullRequestAnalysis pullRequestAnalysis = new PullRequestAnalysis(Collections.singletonList("/project/src/main/java/Other.java"));
+
+      assertThat(pullRequestAnalysis.selectClassesToAnalyze(project)).isEqualTo(1);
+      assertThat(project.getFileList()).containsOnly(noDebugClass.getPath());
+    }
+  }
+
+  @Test
+  void should_always_analyze_archives() throws IOException {
+    try (Project project = createProject()) {
+      project.addFile(new File(temp, "library.jar").getPath());
+      PullRequestAnalysis pullRequestAnalysis = new PullRequestAnalysis(Collections.emptyList());
+
+      assertThat(pullRequestAnalysis.selectClassesToAnalyze(project)).isEqualTo(1);
+      assertThat(project.getFileList()).containsOnly(new File(temp, "library.jar").getPath());
+    }
+  }
+
+  private Project createProject() {
+    Project project = new Project();
+    project.addFile(helloClass.getPath());
+    project.addFile(helloInnerClass.getPath());
+    project.addFile(jspClass.getPath());
+    project.addFile(kotlinClass.getPath());
+    return project;
+  }
+}
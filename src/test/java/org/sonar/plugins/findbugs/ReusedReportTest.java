@@ -0,0 +1,58 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReusedReportTest {
+
+  @TempDir
+  public File temporaryFolder;
+
+  @Test
+  void should_find_reports_matching_globs() throws Exception {
+    File mainReport = createReport("build/reports/spotbugs/main.xml");
+    File testReport = createReport("build/reports/spotbugs/test.xml");
+    File moduleReport = createReport("module/build/reports/spotbugs/main.xml");
+    File targetReport = createReport("target/spotbugsXml.xml");
+    createReport("build/reports/spotbugs/main.html");
+    FileUtils.touch(new File(temporaryFolder, "build/reports/spotbugs/empty.xml"));
+
+    assertThat(ReusedReport.findReports(temporaryFolder, Arrays.asList("/target/spotbugsXml.xml", "build/reports/spotbugs/*.xml")))
+      .containsExactly(targetReport.getCanonicalFile(), mainReport.getCanonicalFile(), testReport.getCanonicalFile());
+    assertThat(ReusedReport.findReports(temporaryFolder, Arrays.asList("**/spotbugs/main.xml", "module/build/reports/spotbugs/main.xml")))
+      .containsExactlyInAnyOrder(mainReport.getCanonicalFile(), moduleReport.getCanonicalFile());
+    assertThat(ReusedReport.findReports(temporaryFolder, Arrays.asList("missing/*.xml", "target/findbugsXml.xml"))).isEmpty();
+  }
+
+  private File createReport(String path) throws Exception {
+    File report = new File(temporaryFolder, path);
+    FileUtils.write(report, "<BugCollection/>", StandardCharsets.UTF_8);
+    return report;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.LocalVariableAnnotation;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingBugReporterTest {
+
+  @Test
+  void should_drop_duplicates_like_the_xml_report() {
+    // Both bugs are converted to the same ReportedBug, but they have different annotations
+    List<BugInstance> bugInstances = Arrays.asList(createBug("a"), createBug("a"), createBug("b"), createBug("b"));
+
+    List<ReportedBug> streamedBugs = new ArrayList<>();
+    StreamingBugReporter reporter = new StreamingBugReporter(streamedBugs::add);
+    SortedBugCollection bugCollection = new SortedBugCollection();
+    for (BugInstance bugInstance : bugInstances) {
+      reporter.doReportBug(bugInstance);
+      bugCollection.add(bugInstance);
+    }
+
+    assertThat(bugCollection.getCollection()).hasSize(2);
+    assertThat(streamedBugs).hasSize(2);
+    assertThat(streamedBugs.get(0)).isEqualTo(streamedBugs.get(1));
+  }
+
+  private static BugInstance createBug(String value) {
+    return new BugInstance("DLS_DEAD_LOCAL_STORE", 2)
+      .addClass("org.example.Hello")
+      .addMethod("org.example.Hello", "hello", "()V", false)
+      .add(new LocalVariableAnnotation("hello", 1, 4))
+      .addSourceLine(new SourceLineAnnotation("org.example.Hello", "Hello.java", 12, 12, 0, 4))
+      .addString(value);
+  }
+}
@@ -11,9 +11,8 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -23,7 +22,6 @@ import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
-import org.sonar.plugins.findbugs.classpath.ClasspathLocator;
 
 class ByteCodeResourceLocatorTest {
 
@@ -125,16 +123,32 @@ class ByteCodeResourceLocatorTest {
   }
   
   @Test
-  void findClassFileByClassName() throws IOException {
-    ClasspathLocator classpathLocator = mock(ClasspathLocator.class);
-    
-    Path folderPath = Files.createDirectories(temp.toPath().resolve("foo").resolve("bar"));
-    Path testFolderPath = Files.createDirectories(temp.toPath().resolve("test").resolve("123"));
-    Path filePath = Files.createFile(folderPath.resolve("Test.class"));
-    
-    when(classpathLocator.classpath()).thenReturn(Arrays.asList(testFolderPath.toFile(), filePath.toFile(), temp));
+  void findSourceFileByPathSuffix() {
+    FilePredicate mainPredicate = mock(FilePredicate.class);
+    when(predicatesEmpty.hasType(InputFile.Type.MAIN)).thenReturn(mainPredicate);
+    InputFile kotlinFile = mock(InputFile.class);
+    when(kotlinFile.relativePath()).thenReturn("module/src/main/kotlin/Foo.kt");
+    when(fsEmpty.inputFiles(mainPredicate)).thenReturn(Collections.singletonList(kotlinFile));
 
     ByteCodeResourceLocator locator = new ByteCodeResourceLocator();
-    assertThat(locator.findClassFileByClassName("foo.bar.Test", classpathLocator)).isNotNull();
+    assertEquals(kotlinFile, locator.findSourceFile("kotlin/Foo.kt", fsEmpty));
+    assertThat(locator.findSourceFile("kotlin/Bar.kt", fsEmpty)).isNull();
+
+    // The main files are only listed once
+    verify(fsEmpty, times(1)).inputFiles(mainPredicate);
+  }
+
+  @Test
+  void extractSmapLocationParsesEachClassOnce() throws IOException {
+    File classFile = new File(temp, "test_jsp.class");
+    Files.copy(Paths.get("src/test/resources/jsp_classes/jetty936/test_jsp.clazz"), classFile.toPath());
+
+    ByteCodeResourceLocator locator = new ByteCodeResourceLocator();
+    SmapParser.SmapLocation location = locator.extractSmapLocation("org.apache.jsp.test_jsp", 127, classFile);
+    locator.extractSmapLocation("org.apache.jsp.test_jsp", 172, classFile);
+
+    assertThat(location.fileInfo.path).isEqualTo("test.jsp");
+    assertThat(location.line).isEqualTo(1);
+    assertThat(locator.getSmapCacheStatistics()).startsWith("1 hit(s), 1 miss(es)");
   }
 }
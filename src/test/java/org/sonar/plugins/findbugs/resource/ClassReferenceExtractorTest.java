@@ -0,0 +1,67 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+class ClassReferenceExtractorTest {
+
+    @Test
+    void readTheReferencedClasses() throws IOException {
+        try (InputStream in = Files.newInputStream(Paths.get("test-resources/classes/Hello.class"))) {
+            ClassReader classReader = new ClassReader(in);
+
+            assertThat(new ClassReferenceExtractor().getReferencedClasses(classReader))
+                .contains("Hello$1", "java.lang.Object", "java.lang.Integer", "java.util.List", "java.util.Comparator")
+                .doesNotContain("Hello");
+        }
+    }
+
+    @Test
+    void readTheClassesOfTheGenericSignaturesAndAnnotations() {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "app/Main", "Ljava/lang/Object;Ljava/lang/Comparable<Lapp/Key;>;",
+            "java/lang/Object", new String[] {"java/lang/Comparable"});
+        classWriter.visitAnnotation("Lapp/ClassAnnotation;", true).visitEnd();
+        FieldVisitor fieldVisitor = classWriter.visitField(Opcodes.ACC_PRIVATE, "values", "Ljava/util/List;", "Ljava/util/List<Lapp/Value;>;", null);
+        fieldVisitor.visitAnnotation("Lapp/FieldAnnotation;", false).visitEnd();
+        fieldVisitor.visitEnd();
+        MethodVisitor methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "find", "(Ljava/lang/Object;)V", null, null);
+        methodVisitor.visitAnnotation("Lapp/MethodAnnotation;", true).visitEnd();
+        methodVisitor.visitParameterAnnotation(0, "Lapp/ParameterAnnotation;", false).visitEnd();
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+
+        assertThat(new ClassReferenceExtractor().getReferencedClasses(new ClassReader(classWriter.toByteArray())))
+            .contains("app.Key", "app.Value", "app.ClassAnnotation", "app.FieldAnnotation", "app.MethodAnnotation", "app.ParameterAnnotation");
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SmapCacheTest {
+
+  @TempDir
+  public File temp;
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  void should_parse_smap_once_per_class_file() throws IOException {
+    File classFile = new File(temp, "test_jsp.class");
+    FileUtils.touch(classFile);
+    SmapParser smap = new SmapParser(FileUtils.readFileToString(new File("src/test/resources/jsp_classes/jetty936/smap.txt"), StandardCharsets.UTF_8));
+    SmapCache cache = new SmapCache(10);
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(cache.get(classFile, loader(Optional.of(smap)))).containsSame(smap);
+    }
+
+    assertThat(loads).hasValue(1);
+    assertThat(cache.getHits()).isEqualTo(4);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getHitRate()).isEqualTo(0.8);
+  }
+
+  @Test
+  void should_cache_class_files_without_smap() throws IOException {
+    File classFile = new File(temp, "Hello.class");
+    FileUtils.touch(classFile);
+    SmapCache cache = new SmapCache(10);
+
+    assertThat(cache.get(classFile, loader(Optional.empty()))).isEmpty();
+    assertThat(cache.get(classFile, loader(Optional.empty()))).isEmpty();
+
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  void should_reload_modified_class_file() throws IOException {
+    File classFile = new File(temp, "Hello.class");
+    FileUtils.touch(classFile);
+    SmapCache cache = new SmapCache(10);
+
+    cache.get(classFile, loader(Optional.empty()));
+    assertThat(classFile.setLastModified(classFile.lastModified() + 60000L)).isTrue();
+    cache.get(classFile, loader(Optional.empty()));
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void should_evict_least_recently_used_class_files() throws IOException {
+    File first = new File(temp, "First.class");
+    File second = new File(temp, "Second.class");
+    File third = new File(temp, "Third.class");
+    FileUtils.touch(first);
+    FileUtils.touch(second);
+    FileUtils.touch(third);
+    SmapCache cache = new SmapCache(2);
+
+    cache.get(first, loader(Optional.empty()));
+    cache.get(second, loader(Optional.empty()));
+    cache.get(first, loader(Optional.empty()));
+    // Second is the least recently used class file
+    cache.get(third, loader(Optional.empty()));
+    cache.get(first, loader(Optional.empty()));
+    cache.get(second, loader(Optional.empty()));
+
+    assertThat(loads).hasValue(4);
+    assertThat(cache.getHits()).isEqualTo(2);
+  }
+
+  private Function<File, Optional<SmapParser>> loader(Optional<SmapParser> smap) {
+    return classFile -> {
+      loads.incrementAndGet();
+      return smap;
+    };
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * SonarQube Findbugs Plugin
+ * Copyright (C) 2012 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.findbugs.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+
+class SourceFileIndexTest {
+
+  @Test
+  void should_find_files_by_path_suffix() {
+    InputFile kotlinFile = inputFile("module/src/main/kotlin/com/example/Foo.kt");
+    InputFile otherKotlinFile = inputFile("module/src/main/kotlin/org/example/Foo.kt");
+    InputFile jspFile = inputFile("web/WEB-INF/jsp/index.jsp");
+    SourceFileIndex index = new SourceFileIndex(Arrays.asList(kotlinFile, otherKotlinFile, jspFile));
+
+    assertThat(index.findByPathSuffix("com/example/Foo.kt")).isSameAs(kotlinFile);
+    assertThat(index.findByPathSuffix("org/example/Foo.kt")).isSameAs(otherKotlinFile);
+    assertThat(index.findByPathSuffix("index.jsp")).isSameAs(jspFile);
+    assertThat(index.findByPathSuffix("module/src/main/kotlin/com/example/Foo.kt")).isSameAs(kotlinFile);
+    assertThat(index.findByPathSuffix("net/example/Foo.kt")).isNull();
+    assertThat(index.findByPathSuffix("com/example/Bar.kt")).isNull();
+  }
+
+  @Test
+  void should_return_first_file_in_file_system_order() {
+    InputFile first = inputFile("first/com/example/Foo.java");
+    InputFile second = inputFile("second/com/example/Foo.java");
+    SourceFileIndex index = new SourceFileIndex(Arrays.asList(first, second));
+
+    assertThat(index.findByPathSuffix("com/example/Foo.java")).isSameAs(first);
+    assertThat(index.findByPathSuffix("second/com/example/Foo.java")).isSameAs(second);
+  }
+
+  private static InputFile inputFile(String relativePath) {
+    InputFile inputFile = mock(InputFile.class);
+    when(inputFile.relativePath()).thenReturn(relativePath);
+    return inputFile;
+  }
+}